@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * The audio devices recording and playback go through. {@link JavaSoundBackend}
+ * talks to the sound card; {@link MemoryAudioBackend} runs off a clock the
+ * caller controls, so the whole pipeline can run on a machine with no sound
+ * card at all.
+ *
+ * <p>Streams mirror Java Sound's data lines: reads and writes block until
+ * the device has taken or produced the bytes, and a stopped stream returns
+ * from them early.
+ */
+interface AudioBackend {
+
+    interface Input {
+        /** @return the format actually opened */
+        AudioFormat getFormat();
+
+        /** @return the buffer size actually granted, in bytes */
+        int getBufferSize();
+
+        void start();
+
+        /** Blocks until {@code length} bytes are read or the stream is stopped. */
+        int read(byte[] buffer, int offset, int length);
+
+        void stop();
+
+        void close();
+    }
+
+    interface Output {
+        AudioFormat getFormat();
+
+        int getBufferSize();
+
+        /** @return how many bytes can be written without blocking */
+        int available();
+
+        void start();
+
+        /** Blocks until {@code length} bytes are queued or the stream is stopped. */
+        int write(byte[] buffer, int offset, int length);
+
+        void stop();
+
+        void close();
+    }
+
+    String getName();
+
+    boolean supportsInput(AudioFormat format);
+
+    boolean supportsOutput(AudioFormat format);
+
+    /**
+     * @param bufferBytes requested buffer size, or 0 for the device default;
+     *                    the device may grant a different size
+     */
+    Input openInput(AudioFormat format, int bufferBytes) throws LineUnavailableException;
+
+    Output openOutput(AudioFormat format, int bufferBytes) throws LineUnavailableException;
+
+    /**
+     * The backend named by {@code loopstation.audio.backend}: {@code javasound}
+     * (the default) or {@code memory}, which plays into a real-time clock
+     * with silent input.
+     */
+    static AudioBackend fromSystemProperty() {
+        String name = System.getProperty("loopstation.audio.backend", "javasound");
+        switch (name) {
+            case "javasound":
+                return new JavaSoundBackend();
+            case "memory":
+                MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, false);
+                backend.startRealtimeClock(10);
+                return backend;
+            default:
+                System.err.println("Unknown audio backend '" + name + "', using Java Sound");
+                return new JavaSoundBackend();
+        }
+    }
+}
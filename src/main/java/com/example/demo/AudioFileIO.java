@@ -0,0 +1,369 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * WAV/AIFF import and export. Everything moves through fixed-size chunks:
+ * exports write the header and PCM through a {@link FileChannel} with a direct
+ * buffer, and imports decode an {@link AudioInputStream} a chunk at a time,
+ * so file size does not translate into heap size.
+ */
+class AudioFileIO {
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int WAV_HEADER_SIZE = 44;
+    private static final int AIFF_HEADER_SIZE = 54;
+    static final long MAX_DATA_SIZE = 0xFFFFFFFFL - AIFF_HEADER_SIZE;
+
+    private AudioFileIO() {
+    }
+
+    public static AudioFileFormat.Type typeFor(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".aif") || name.endsWith(".aiff")
+                ? AudioFileFormat.Type.AIFF
+                : AudioFileFormat.Type.WAVE;
+    }
+
+    // ---- export ----
+
+    public static void exportTrack(byte[] audioData, AudioFormat format, Path out) throws IOException {
+        checkFormat(format);
+        AudioFileFormat.Type type = typeFor(out);
+        long length = audioData.length - (audioData.length % format.getFrameSize());
+
+        try (FileChannel channel = openForWrite(out)) {
+            channel.write(header(type, format, length));
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(byteOrder(type));
+            ByteBuffer source = ByteBuffer.wrap(audioData, 0, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+            while (source.hasRemaining()) {
+                buffer.clear();
+                while (buffer.hasRemaining() && source.remaining() >= 2) {
+                    buffer.putShort(source.getShort());
+                }
+                buffer.flip();
+                writeFully(channel, buffer);
+            }
+            writePad(channel, length);
+        }
+    }
+
+    public static void exportMixdown(Mixdown mixdown, Path out) throws IOException {
+        try (FileChannel channel = openForWrite(out)) {
+            writeMixdown(mixdown, typeFor(out), channel);
+        }
+    }
+
+    /** Renders a mixdown as a complete WAV or AIFF file into {@code channel}. */
+    public static void writeMixdown(Mixdown mixdown, AudioFileFormat.Type type, WritableByteChannel channel) throws IOException {
+        long length = mixdown.getLengthBytes();
+        writeFully(channel, header(type, mixdown.getFormat(), length));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(byteOrder(type));
+        long position = 0;
+        while (position < length) {
+            buffer.clear();
+            position += mixdown.render(position, buffer);
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+        writePad(channel, length);
+    }
+
+    public static long fileLength(AudioFileFormat.Type type, long dataLength) {
+        int headerSize = type == AudioFileFormat.Type.AIFF ? AIFF_HEADER_SIZE : WAV_HEADER_SIZE;
+        return headerSize + dataLength + (dataLength & 1);
+    }
+
+    // ---- import ----
+
+    /**
+     * Decodes an audio file into a track buffer in {@code format}. The track
+     * itself lives in memory, but decoding only ever holds one chunk of the
+     * source at a time. When the source declares its length, as WAV and AIFF
+     * always do, the track is allocated once at its final size.
+     */
+    public static byte[] importTrack(File file, AudioFormat format) throws IOException, UnsupportedAudioFileException {
+        checkFormat(format);
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(file)) {
+            long expected = expectedLength(source, format);
+            if (expected > Integer.MAX_VALUE - 8) {
+                throw new IOException("File is too long to load into a track: " + file.getName());
+            }
+
+            if (expected < 0) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(CHUNK_SIZE);
+                convert(source, format, Channels.newChannel(out));
+                return out.toByteArray();
+            }
+
+            byte[] track = new byte[(int) expected];
+            if (source.getFormat().matches(format)) {
+                source.readNBytes(track, 0, track.length);
+            } else {
+                // Resampling can land a frame either side of the estimate; the
+                // sink drops the overshoot and a short result ends in silence
+                convert(source, format, new ArraySink(track));
+            }
+            return track;
+        }
+    }
+
+    /** Fills a fixed array and discards whatever does not fit. */
+    private static class ArraySink implements WritableByteChannel {
+        private final ByteBuffer target;
+
+        ArraySink(byte[] array) {
+            this.target = ByteBuffer.wrap(array);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            int fits = Math.min(length, target.remaining());
+            target.put(src.slice(src.position(), fits));
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static long convert(AudioInputStream source, AudioFormat target, WritableByteChannel out) throws IOException {
+        AudioFormat sourceFormat = source.getFormat();
+        AudioFormat decodedFormat = new AudioFormat(
+                sourceFormat.getSampleRate(), 16, sourceFormat.getChannels(), true, false);
+
+        try (AudioInputStream decoded = sourceFormat.matches(decodedFormat)
+                ? source
+                : AudioSystem.getAudioInputStream(decodedFormat, source)) {
+            ChunkConverter converter = new ChunkConverter(decodedFormat, target);
+            byte[] chunk = new byte[CHUNK_SIZE - (CHUNK_SIZE % decodedFormat.getFrameSize())];
+            ByteBuffer buffer = ByteBuffer.allocateDirect(converter.maxOutputBytes(chunk.length))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            long written = 0;
+            int filled = 0;
+            int bytesRead;
+
+            while ((bytesRead = decoded.read(chunk, filled, chunk.length - filled)) != -1) {
+                filled += bytesRead;
+                int whole = filled - (filled % decodedFormat.getFrameSize());
+                if (whole == 0) continue;
+
+                buffer.clear();
+                converter.convert(chunk, whole, buffer);
+                buffer.flip();
+                written += buffer.remaining();
+                writeFully(out, buffer);
+
+                System.arraycopy(chunk, whole, chunk, 0, filled - whole);
+                filled -= whole;
+            }
+            return written;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot decode " + sourceFormat, e);
+        }
+    }
+
+    private static long expectedLength(AudioInputStream source, AudioFormat target) {
+        long frames = source.getFrameLength();
+        if (frames == AudioSystem.NOT_SPECIFIED) return -1;
+        double ratio = target.getSampleRate() / source.getFormat().getSampleRate();
+        return (long) Math.ceil(frames * ratio) * target.getFrameSize();
+    }
+
+    /**
+     * Downmixes and resamples 16-bit little-endian PCM into the target layout.
+     * Resampling is linear and carries its phase across chunks, so chunk
+     * boundaries are inaudible.
+     */
+    private static class ChunkConverter {
+        private final int sourceChannels;
+        private final int targetChannels;
+        private final double step;
+        private final short[] previous;
+        private double phase = 0.0;
+
+        ChunkConverter(AudioFormat source, AudioFormat target) throws IOException {
+            this.sourceChannels = source.getChannels();
+            this.targetChannels = target.getChannels();
+            if (targetChannels != 1 && targetChannels != sourceChannels) {
+                throw new IOException("Cannot convert " + sourceChannels + " channels to " + targetChannels);
+            }
+            this.step = source.getSampleRate() / target.getSampleRate();
+            this.previous = new short[targetChannels];
+        }
+
+        int maxOutputBytes(int inputBytes) {
+            int frames = inputBytes / (sourceChannels * 2);
+            return ((int) Math.ceil(frames / step) + 2) * targetChannels * 2;
+        }
+
+        void convert(byte[] data, int length, ByteBuffer out) {
+            int frames = length / (sourceChannels * 2);
+
+            if (step == 1.0) {
+                for (int f = 0; f < frames; f++) {
+                    for (int c = 0; c < targetChannels; c++) {
+                        out.putShort(sample(data, f, c));
+                    }
+                }
+                return;
+            }
+
+            // Frame index -1 refers to the last frame of the previous chunk.
+            while (phase < frames - 1) {
+                int index = (int) Math.floor(phase);
+                double fraction = phase - index;
+                for (int c = 0; c < targetChannels; c++) {
+                    short a = index < 0 ? previous[c] : sample(data, index, c);
+                    short b = sample(data, index + 1, c);
+                    out.putShort((short) Math.round(a + (b - a) * fraction));
+                }
+                phase += step;
+            }
+            phase -= frames;
+            for (int c = 0; c < targetChannels; c++) {
+                previous[c] = sample(data, frames - 1, c);
+            }
+        }
+
+        private short sample(byte[] data, int frame, int channel) {
+            if (targetChannels == sourceChannels) {
+                return readShort(data, (frame * sourceChannels + channel) * 2);
+            }
+            int sum = 0;
+            for (int c = 0; c < sourceChannels; c++) {
+                sum += readShort(data, (frame * sourceChannels + c) * 2);
+            }
+            return (short) (sum / sourceChannels);
+        }
+
+        private static short readShort(byte[] data, int offset) {
+            return (short) ((data[offset + 1] << 8) | (data[offset] & 0xFF));
+        }
+    }
+
+    // ---- headers ----
+
+    private static ByteBuffer header(AudioFileFormat.Type type, AudioFormat format, long dataLength) throws IOException {
+        if (dataLength > MAX_DATA_SIZE) {
+            throw new IOException("Audio data too large for a " + type + " file: " + dataLength + " bytes");
+        }
+        return type == AudioFileFormat.Type.AIFF
+                ? aiffHeader(format, dataLength)
+                : wavHeader(format, dataLength);
+    }
+
+    private static ByteBuffer wavHeader(AudioFormat format, long dataLength) {
+        int channels = format.getChannels();
+        int sampleRate = (int) format.getSampleRate();
+        int bits = format.getSampleSizeInBits();
+        int blockAlign = format.getFrameSize();
+
+        ByteBuffer header = ByteBuffer.allocateDirect(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ascii("RIFF"));
+        header.putInt((int) (36 + dataLength + (dataLength & 1)));
+        header.put(ascii("WAVE"));
+        header.put(ascii("fmt "));
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) bits);
+        header.put(ascii("data"));
+        header.putInt((int) dataLength);
+        return header.flip();
+    }
+
+    private static ByteBuffer aiffHeader(AudioFormat format, long dataLength) {
+        ByteBuffer header = ByteBuffer.allocateDirect(AIFF_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.put(ascii("FORM"));
+        header.putInt((int) (46 + dataLength + (dataLength & 1)));
+        header.put(ascii("AIFF"));
+        header.put(ascii("COMM"));
+        header.putInt(18);
+        header.putShort((short) format.getChannels());
+        header.putInt((int) (dataLength / format.getFrameSize()));
+        header.putShort((short) format.getSampleSizeInBits());
+        putExtended(header, format.getSampleRate());
+        header.put(ascii("SSND"));
+        header.putInt((int) (8 + dataLength));
+        header.putInt(0);
+        header.putInt(0);
+        return header.flip();
+    }
+
+    /** Writes a sample rate as the 80-bit IEEE extended float AIFF requires. */
+    private static void putExtended(ByteBuffer buffer, double value) {
+        long mantissa = (long) value;
+        if (mantissa <= 0) {
+            buffer.putShort((short) 0);
+            buffer.putLong(0);
+            return;
+        }
+        int shift = Long.numberOfLeadingZeros(mantissa);
+        buffer.putShort((short) (16383 + 63 - shift));
+        buffer.putLong(mantissa << shift);
+    }
+
+    private static byte[] ascii(String tag) {
+        return tag.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // ---- helpers ----
+
+    private static void checkFormat(AudioFormat format) {
+        if (format.getSampleSizeInBits() != 16 || format.isBigEndian()
+                || format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED) {
+            throw new IllegalArgumentException("Only 16-bit signed little-endian PCM is supported, got " + format);
+        }
+    }
+
+    private static ByteOrder byteOrder(AudioFileFormat.Type type) {
+        return type == AudioFileFormat.Type.AIFF ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    private static FileChannel openForWrite(Path out) throws IOException {
+        return FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void writePad(WritableByteChannel channel, long dataLength) throws IOException {
+        if ((dataLength & 1) != 0) {
+            writeFully(channel, ByteBuffer.allocate(1));
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times the playback pipeline against {@link MemoryAudioBackend}, so it needs
+ * no sound card and no display. Started with {@code --audio-benchmark}; the
+ * pipeline's correctness is covered by the unit tests, this only measures
+ * how it performs on the machine at hand.
+ *
+ * <ul>
+ * <li>throughput: how many times faster than real time a set of tracks can
+ * be played, with the clock advanced as fast as the players keep up</li>
+ * <li>real time: underruns while the same tracks play against a wall clock</li>
+ * </ul>
+ *
+ * <pre>--audio-benchmark [--tracks=8] [--seconds=20] [--tempo=1.0]
+ *     [--realtime-seconds=3] [--min-realtime-factor=X]</pre>
+ *
+ * Exits with status 1 if the throughput is below the minimum.
+ */
+class AudioPipelineBenchmark {
+    private static final AudioFormat AUDIO_FORMAT = new AudioFormat(44100.0f, 16, 1, true, false);
+    private static final int RATE = (int) AUDIO_FORMAT.getSampleRate();
+    private static final int STEP_FRAMES = RATE / 100;
+    private static final long IDLE_TIMEOUT_MILLIS = 5000;
+
+    private int tracks = 8;
+    private int seconds = 20;
+    private double tempo = 1.0;
+    private int realtimeSeconds = 3;
+    private double minRealtimeFactor = -1;
+
+    private boolean checkThroughput() throws Exception {
+        MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, false);
+        List<AudioPlayer> players = startPlayers(backend);
+
+        // The blocks are large so the hand-offs between threads do not dominate
+        long started = System.nanoTime();
+        backend.runLockstep(seconds * RATE, RATE / 20, IDLE_TIMEOUT_MILLIS);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+
+        stopPlayers(backend, players);
+        double factor = seconds / elapsed;
+        System.out.printf("throughput: %d tracks at tempo %.2f, %d s of audio in %.2f s (%.1fx real time)%n",
+                tracks, tempo, seconds, elapsed, factor);
+        return minRealtimeFactor < 0 || factor >= minRealtimeFactor;
+    }
+
+    private void measureRealtime() throws InterruptedException {
+        MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, false);
+        List<AudioPlayer> players = startPlayers(backend);
+
+        backend.startRealtimeClock(10);
+        Thread.sleep(realtimeSeconds * 1000L);
+        long underruns = 0;
+        long played = 0;
+        for (MemoryAudioBackend.MemoryOutput output : backend.getOutputs()) {
+            underruns += output.getUnderrunFrames();
+            played += output.getFramesPlayed();
+        }
+        for (AudioPlayer player : players) {
+            player.close();
+        }
+        backend.stopRealtimeClock();
+
+        System.out.printf("real time:  %d tracks for %d s, %d of %d frames underran (%.3f%%)%n",
+                tracks, realtimeSeconds, underruns, played, played > 0 ? 100.0 * underruns / played : 0.0);
+    }
+
+    private List<AudioPlayer> startPlayers(MemoryAudioBackend backend) {
+        List<AudioPlayer> players = new ArrayList<>();
+        for (int i = 0; i < tracks; i++) {
+            AudioPlayer player = new AudioPlayer(noise(RATE * 10, i), AUDIO_FORMAT, backend);
+            player.setTempo(tempo);
+            player.play();
+            players.add(player);
+        }
+        return players;
+    }
+
+    private void stopPlayers(MemoryAudioBackend backend, List<AudioPlayer> players) throws Exception {
+        backend.runUntilDone(STEP_FRAMES, () -> {
+            for (AudioPlayer player : players) {
+                player.close();
+            }
+            return null;
+        });
+    }
+
+    /** Reproducible noise at half scale, so volume and mixing never clip. */
+    private static byte[] noise(int frames, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            int sample = random.nextInt(32768) - 16384;
+            data[i * 2] = (byte) sample;
+            data[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        return data;
+    }
+
+    private int run() throws Exception {
+        boolean fastEnough = checkThroughput();
+        if (realtimeSeconds > 0) {
+            measureRealtime();
+        }
+        return fastEnough ? 0 : 1;
+    }
+
+    public static void main(String[] args) {
+        AudioPipelineBenchmark benchmark = new AudioPipelineBenchmark();
+        for (String arg : args) {
+            if (arg.startsWith("--tracks=")) {
+                benchmark.tracks = Integer.parseInt(arg.substring("--tracks=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                benchmark.seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            } else if (arg.startsWith("--tempo=")) {
+                benchmark.tempo = Double.parseDouble(arg.substring("--tempo=".length()));
+            } else if (arg.startsWith("--realtime-seconds=")) {
+                benchmark.realtimeSeconds = Integer.parseInt(arg.substring("--realtime-seconds=".length()));
+            } else if (arg.startsWith("--min-realtime-factor=")) {
+                benchmark.minRealtimeFactor = Double.parseDouble(arg.substring("--min-realtime-factor=".length()));
+            }
+        }
+
+        int status;
+        try {
+            status = benchmark.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 1;
+        } catch (Exception e) {
+            System.err.println("Audio benchmark failed: " + e.getMessage());
+            e.printStackTrace();
+            status = 1;
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.demo;
+
+import javax.sound.sampled.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+class AudioPlayer {
+    private final AudioBackend backend;
+    private AudioBackend.Output output;
+    private StreamingAudio audio;
+    private volatile TakeStack takes;
+    private AudioFormat format;
+    private Thread playbackThread;
+    private volatile boolean isPlaying = false;
+    private volatile boolean isMuted = false;
+    private volatile float volume = 1.0f;
+    private volatile double tempo = 1.0;
+    private volatile LevelMeter levelMeter;
+
+    // Stretched renders of this loop at recently used tempos, keyed by tempo in permille
+    private static final int CACHED_RENDERS = Integer.getInteger("loopstation.tempo.cachedRenders", 3);
+    private final LinkedHashMap<Integer, byte[]> renders = new LinkedHashMap<>(8, 0.75f, true);
+    private int rendersVersion;
+
+    // Playback thread only
+    private long position;
+    private TimeStretch stretcher;
+    private byte[] playingRender;
+    private int renderPosition;
+
+    // Levels of the last block passed through applyVolume (playback thread only)
+    private float blockPeak;
+    private float blockRms;
+
+    public AudioPlayer(byte[] audioData, AudioFormat format, AudioBackend backend) {
+        this(StreamingAudio.of(audioData), format, backend);
+    }
+
+    public AudioPlayer(StreamingAudio audio, AudioFormat format, AudioBackend backend) {
+        this.audio = audio;
+        this.format = format;
+        this.backend = backend;
+        initializeLine();
+    }
+
+    private void initializeLine() {
+        try {
+            output = backend.openOutput(format, 0);
+        } catch (LineUnavailableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void play() {
+        if (isPlaying) return;
+
+        isPlaying = true;
+        output.start();
+
+        playbackThread = new Thread(() -> {
+            byte[] buffer = new byte[4096];
+            position = 0;
+            stretcher = null;
+            playingRender = null;
+
+            while (isPlaying && audio.length() > 0) {
+                // A track whose load failed would otherwise spin on reads that return at once
+                if (audio.completion().isCompletedExceptionally()) {
+                    System.err.println("Playback stopped: the track's audio failed to load");
+                    isPlaying = false;
+                    break;
+                }
+                try {
+                    double rate = tempo;
+                    int bytesRead;
+                    if (rate != 1.0 && TimeStretch.canStretch(audio.length())) {
+                        bytesRead = readStretched(buffer, rate);
+                    } else {
+                        stretcher = null;
+                        playingRender = null;
+                        // Waits briefly if a chunked track has not loaded this far yet
+                        bytesRead = readSource(position, buffer, 0, buffer.length, 50);
+                        if (bytesRead < 0) {
+                            position = 0;
+                            continue;
+                        }
+                        position += bytesRead;
+                    }
+                    if (bytesRead == 0) continue;
+
+                    if (!isMuted && volume > 0) {
+                        byte[] adjustedBuffer = applyVolume(buffer, bytesRead);
+                        output.write(adjustedBuffer, 0, bytesRead);
+                        publishLevels(blockPeak, blockRms, position);
+                    } else {
+                        // Silence keeps the device clock pacing a muted track too
+                        Arrays.fill(buffer, 0, bytesRead, (byte) 0);
+                        output.write(buffer, 0, bytesRead);
+                        publishLevels(0, 0, position);
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        playbackThread.start();
+    }
+
+    private int readSource(long from, byte[] dst, int offset, int length, long timeoutMillis) throws InterruptedException {
+        TakeStack layered = takes;
+        return layered != null
+                ? layered.read(from, dst, offset, length, timeoutMillis)
+                : audio.read(from, dst, offset, length, timeoutMillis);
+    }
+
+    /**
+     * Fills {@code buffer} at the given tempo: straight from a finished
+     * render if there is one, otherwise by stretching live.
+     */
+    private int readStretched(byte[] buffer, double rate) throws InterruptedException {
+        int frameSize = format.getFrameSize();
+        byte[] render = cachedRender(rate);
+
+        if (render != null) {
+            stretcher = null;
+            if (render != playingRender) {
+                playingRender = render;
+                renderPosition = (int) (Math.round(position / rate / frameSize) * frameSize % render.length);
+            }
+            int count = Math.min(buffer.length, render.length - renderPosition);
+            System.arraycopy(render, renderPosition, buffer, 0, count);
+            renderPosition = (renderPosition + count) % render.length;
+            position = (long) (renderPosition * rate) / frameSize * frameSize % audio.length();
+            return count;
+        }
+
+        playingRender = null;
+        if (stretcher == null) {
+            stretcher = new TimeStretch(this::readSource, audio.length());
+            stretcher.reset((double) position / frameSize);
+        }
+        stretcher.setTempo(rate);
+
+        int count = 0;
+        while (count + TimeStretch.HOP * 2 <= buffer.length) {
+            int produced = stretcher.step(buffer, count, 50);
+            if (produced == 0) break;
+            count += produced;
+        }
+        position = (long) stretcher.sourcePosition() * frameSize;
+        return count;
+    }
+
+    private byte[] cachedRender(double rate) {
+        TakeStack layered = takes;
+        int version = layered != null ? layered.getVersion() : 0;
+        synchronized (renders) {
+            if (version != rendersVersion) {
+                renders.clear();
+                rendersVersion = version;
+            }
+            return renders.get((int) Math.round(rate * 1000));
+        }
+    }
+
+    /**
+     * Plays at {@code tempo} times the recorded speed without changing pitch.
+     * Playback stretches live at first while a render at this tempo is made
+     * in the background; once it is ready, playback just copies from it.
+     */
+    public void setTempo(double tempo) {
+        this.tempo = Math.max(TimeStretch.MIN_TEMPO, Math.min(TimeStretch.MAX_TEMPO, tempo));
+        double rate = this.tempo;
+        if (rate == 1.0 || !TimeStretch.canStretch(audio.length()) || cachedRender(rate) != null) return;
+
+        TakeStack layered = takes;
+        int version = layered != null ? layered.getVersion() : 0;
+        // Skipped if the tempo moved on before the renderer got to it, e.g. while the slider is dragged
+        TimeStretch.renderAsync(() -> layered != null ? layered.flatten() : audio.awaitComplete(), rate,
+                        () -> this.tempo == rate)
+                .thenAccept(render -> {
+                    if (render == null) return;
+                    synchronized (renders) {
+                        if (version != rendersVersion) return;
+                        renders.put((int) Math.round(rate * 1000), render);
+                        while (renders.size() > CACHED_RENDERS) {
+                            renders.remove(renders.keySet().iterator().next());
+                        }
+                    }
+                })
+                .exceptionally(e -> {
+                    System.err.println("Tempo render failed: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    private byte[] applyVolume(byte[] buffer, int length) {
+        byte[] adjusted = new byte[length];
+        int peak = 0;
+        double sumSquares = 0;
+
+        for (int i = 0; i < length - 1; i += 2) {
+            short sample = (short)((buffer[i + 1] << 8) | (buffer[i] & 0xFF));
+            float processedSample = sample * volume;
+            processedSample = Math.max(-32768, Math.min(32767, processedSample));
+
+            short finalSample = (short)processedSample;
+            adjusted[i] = (byte)(finalSample & 0xFF);
+            adjusted[i + 1] = (byte)((finalSample >> 8) & 0xFF);
+
+            peak = Math.max(peak, Math.abs((int) finalSample));
+            sumSquares += (double) finalSample * finalSample;
+        }
+
+        int samples = length / 2;
+        blockPeak = peak / 32768.0f;
+        blockRms = samples > 0 ? (float) (Math.sqrt(sumSquares / samples) / 32768.0) : 0.0f;
+        return adjusted;
+    }
+
+    /**
+     * Publishes the block's levels and the playhead. The line still holds
+     * queued bytes that have not been heard, so those are subtracted.
+     */
+    private void publishLevels(float peak, float rms, long position) {
+        LevelMeter meter = levelMeter;
+        if (meter == null) return;
+
+        // Queued bytes are at the playback tempo; the position is in the loop
+        long queued = (long) ((output.getBufferSize() - output.available()) * tempo);
+        long audible = Math.floorMod(position - queued, (long) audio.length());
+        meter.publish(peak, rms, audible);
+    }
+
+    public void setLevelMeter(LevelMeter levelMeter) {
+        this.levelMeter = levelMeter;
+    }
+
+    /** Plays the loop with these overdubs mixed in; it must wrap the same audio. */
+    public void setTakes(TakeStack takes) {
+        this.takes = takes;
+    }
+
+    public void stop() {
+        isPlaying = false;
+        if (playbackThread != null) {
+            try {
+                playbackThread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        if (output != null) {
+            output.stop();
+        }
+        if (levelMeter != null) {
+            levelMeter.reset();
+        }
+    }
+
+    public void close() {
+        stop();
+        if (output != null) {
+            output.close();
+        }
+    }
+
+    public void setMuted(boolean muted) {
+        this.isMuted = muted;
+    }
+
+    public void setVolume(float volume) {
+        this.volume = Math.max(0.0f, Math.min(1.0f, volume));
+    }
+
+    public boolean isPlaying() {
+        return isPlaying;
+    }
+}
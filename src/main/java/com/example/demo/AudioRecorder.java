@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import javax.sound.sampled.*;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+class AudioRecorder {
+    private final AudioBackend backend;
+    private final AudioFormat format;
+    private AudioBackend.Input input;
+    private ByteArrayOutputStream recordedData;
+    private Thread recordingThread;
+    private volatile boolean isRecording = false;
+    private int passLength;
+    private Consumer<byte[]> passListener;
+
+    public AudioRecorder(AudioFormat format, AudioBackend backend) {
+        this.format = format;
+        this.backend = backend;
+        if (!backend.supportsInput(format)) {
+            System.err.println("Line not supported");
+        }
+    }
+
+    /**
+     * Hands every {@code passLength} bytes to {@code listener} as they are
+     * recorded, on the recording thread. {@link #stopRecording()} then
+     * returns only the last, incomplete pass.
+     */
+    public void setPassListener(int passLength, Consumer<byte[]> listener) {
+        this.passLength = passLength;
+        this.passListener = listener;
+    }
+
+    /**
+     * @return {@code false} if the input device could not be opened; nothing
+     * is recorded then
+     */
+    public boolean startRecording() {
+        try {
+            recordedData = new ByteArrayOutputStream();
+            input = backend.openInput(format, 0);
+            input.start();
+            isRecording = true;
+
+            recordingThread = new Thread(() -> {
+                byte[] buffer = new byte[4096];
+                while (isRecording) {
+                    int bytesRead = input.read(buffer, 0, buffer.length);
+                    if (bytesRead > 0) {
+                        recordedData.write(buffer, 0, bytesRead);
+                    }
+                    if (passListener != null && recordedData.size() >= passLength) {
+                        byte[] recorded = recordedData.toByteArray();
+                        recordedData.reset();
+                        recordedData.write(recorded, passLength, recorded.length - passLength);
+                        passListener.accept(Arrays.copyOf(recorded, passLength));
+                    }
+                }
+            });
+            recordingThread.start();
+            return true;
+
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            // Java Sound reports a missing or unsupported line with IllegalArgumentException
+            e.printStackTrace();
+            input = null;
+            return false;
+        }
+    }
+
+    public byte[] stopRecording() {
+        isRecording = false;
+
+        if (recordingThread != null) {
+            try {
+                recordingThread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (input != null) {
+            input.stop();
+            input.close();
+        }
+
+        return recordedData != null ? recordedData.toByteArray() : null;
+    }
+}
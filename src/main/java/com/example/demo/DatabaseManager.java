@@ -0,0 +1,718 @@
+package com.example.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+
+class DatabaseManager {
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/loopstation_db?connectTimeout=5000";
+    private static final String DB_USER = "root";
+    private static final String DB_PASSWORD = "Guihan26";
+
+    // Frame-aligned and far below MySQL's smallest max_allowed_packet
+    static final int CHUNK_SIZE = 256 * 1024;
+    private static final int PREFETCH_CHUNKS = 4;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private volatile Connection connection;
+
+    public DatabaseManager() {
+        this(System.getProperty("loopstation.db.url", DB_URL),
+                System.getProperty("loopstation.db.user", DB_USER),
+                System.getProperty("loopstation.db.password", DB_PASSWORD));
+    }
+
+    public DatabaseManager(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Opens the connection. This loads the driver and may block for the
+     * connect timeout, so it is called off the FX thread after the window
+     * is shown rather than from the constructor.
+     */
+    public boolean connect() {
+        try {
+            if (url.startsWith("jdbc:mysql:")) {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            }
+            connection = openConnection();
+            ensureSchema();
+            System.out.println("Database connected successfully!");
+            return true;
+        } catch (ClassNotFoundException e) {
+            System.err.println("MySQL JDBC Driver not found!");
+            e.printStackTrace();
+        } catch (SQLException e) {
+            System.err.println("Database connection failed!");
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public boolean isConnected() {
+        return connection != null;
+    }
+
+    /**
+     * Brings databases created by older versions up to date. Old rows keep
+     * NULL analysis until the project is saved again, and monolithic audio
+     * moves to chunks the first time a track is loaded.
+     */
+    private void ensureSchema() throws SQLException {
+        if (!hasColumn("tracks", "duration_ms")) {
+            addAnalysisColumns();
+        }
+        if (!hasColumn("tracks", "chunk_count")) {
+            addChunkStorage();
+        }
+        if (!hasColumn("tracks", "audio_crc32")) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN audio_crc32 BIGINT NULL");
+            }
+            System.out.println("Added track checksums to the database");
+        }
+    }
+
+    private void addChunkStorage() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS track_chunks ("
+                    + "project_id INT NOT NULL, "
+                    + "track_number INT NOT NULL, "
+                    + "seq INT NOT NULL, "
+                    + "data MEDIUMBLOB NOT NULL, "
+                    + "PRIMARY KEY (project_id, track_number, seq))");
+            stmt.executeUpdate("ALTER TABLE tracks MODIFY audio_data LONGBLOB NULL");
+            stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN audio_length BIGINT NULL");
+            stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN chunk_count INT NULL");
+        }
+        System.out.println("Added chunked audio storage to the database");
+    }
+
+    private void addAnalysisColumns() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN duration_ms BIGINT NULL");
+            stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN peak_dbfs FLOAT NULL");
+            stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN rms_dbfs FLOAT NULL");
+            stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN loudness_lufs FLOAT NULL");
+            stmt.executeUpdate("ALTER TABLE tracks ADD COLUMN is_silent BOOLEAN NULL");
+            stmt.executeUpdate("CREATE INDEX idx_tracks_duration ON tracks (duration_ms)");
+            stmt.executeUpdate("CREATE INDEX idx_tracks_loudness ON tracks (loudness_lufs)");
+            stmt.executeUpdate("CREATE INDEX idx_tracks_silent ON tracks (project_id, is_silent)");
+        }
+        System.out.println("Added track analysis columns to the database");
+    }
+
+    private boolean hasColumn(String table, String column) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        // Unquoted identifiers may be stored upper-case (e.g. by embedded databases)
+        try (ResultSet rs = meta.getColumns(connection.getCatalog(), null, table, column)) {
+            if (rs.next()) return true;
+        }
+        try (ResultSet rs = meta.getColumns(connection.getCatalog(), null, table.toUpperCase(), column.toUpperCase())) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * @throws IOException if a track's audio failed to load; nothing is
+     *                     written then
+     */
+    public int saveProject(String projectName, List<TrackSnapshot> tracks) throws SQLException, IOException {
+        List<byte[]> audio = collectAudio(tracks);
+
+        int projectId = inTransaction(db -> {
+            String insertProject = "INSERT INTO projects (name) VALUES (?)";
+            PreparedStatement projectStmt = db.prepareStatement(insertProject, Statement.RETURN_GENERATED_KEYS);
+            projectStmt.setString(1, projectName);
+            projectStmt.executeUpdate();
+
+            ResultSet rs = projectStmt.getGeneratedKeys();
+            int id = 0;
+            if (rs.next()) {
+                id = rs.getInt(1);
+            }
+
+            saveTracks(db, id, tracks, audio);
+            return id;
+        });
+        cacheSavedTracks(projectId, tracks, audio);
+
+        return projectId;
+    }
+
+    /** @see #saveProject(String, List) */
+    public void updateProject(int projectId, String projectName, List<TrackSnapshot> tracks) throws SQLException, IOException {
+        // Tracks loaded from this project may still be streaming in from the
+        // chunks about to be replaced
+        List<byte[]> audio = collectAudio(tracks);
+
+        // All or nothing: a chunk that fails to insert leaves the old tracks in place
+        inTransaction(db -> {
+            // Update project name
+            String updateProject = "UPDATE projects SET name = ?, last_modified = CURRENT_TIMESTAMP WHERE id = ?";
+            PreparedStatement stmt = db.prepareStatement(updateProject);
+            stmt.setString(1, projectName);
+            stmt.setInt(2, projectId);
+            stmt.executeUpdate();
+
+            // Delete old tracks
+            String deleteTracks = "DELETE FROM tracks WHERE project_id = ?";
+            PreparedStatement deleteStmt = db.prepareStatement(deleteTracks);
+            deleteStmt.setInt(1, projectId);
+            deleteStmt.executeUpdate();
+
+            String deleteChunks = "DELETE FROM track_chunks WHERE project_id = ?";
+            PreparedStatement deleteChunksStmt = db.prepareStatement(deleteChunks);
+            deleteChunksStmt.setInt(1, projectId);
+            deleteChunksStmt.executeUpdate();
+
+            // Save new tracks
+            saveTracks(db, projectId, tracks, audio);
+            return null;
+        });
+        cacheSavedTracks(projectId, tracks, audio);
+    }
+
+    /**
+     * Waits for every track to finish loading before anything is written, so
+     * a track that failed to load stops the save instead of leaving it half
+     * done.
+     *
+     * @return each track's audio
+     */
+    private static List<byte[]> collectAudio(List<TrackSnapshot> tracks) throws IOException {
+        List<byte[]> audio = new ArrayList<>();
+        for (TrackSnapshot track : tracks) {
+            try {
+                audio.add(track.getAudio().join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new IOException("Track " + track.getTrackNumber() + " did not load: "
+                        + cause.getMessage(), cause);
+            }
+        }
+        return audio;
+    }
+
+    private static void saveTracks(Connection db, int projectId, List<TrackSnapshot> tracks, List<byte[]> audio)
+            throws SQLException {
+        String insertTrack = "INSERT INTO tracks (project_id, track_number, audio_length, chunk_count, audio_crc32, "
+                + "volume, is_muted, duration_ms, peak_dbfs, rms_dbfs, loudness_lufs, is_silent) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        for (int i = 0; i < tracks.size(); i++) {
+            TrackSnapshot track = tracks.get(i);
+            byte[] audioData = audio.get(i);
+            // Usually finished long ago on the analysis thread; only a take
+            // saved the moment it was recorded waits here. A failed analysis
+            // is saved as NULL, like rows from before analysis existed.
+            CompletableFuture<TrackAnalysis> pending = track.getAnalysis();
+            TrackAnalysis analysis = pending != null ? pending.exceptionally(e -> null).join() : null;
+
+            PreparedStatement trackStmt = db.prepareStatement(insertTrack);
+            trackStmt.setInt(1, projectId);
+            trackStmt.setInt(2, track.getTrackNumber());
+            trackStmt.setLong(3, audioData.length);
+            trackStmt.setInt(4, chunkCount(audioData.length));
+            trackStmt.setLong(5, checksum(audioData));
+            trackStmt.setFloat(6, track.getVolume());
+            trackStmt.setBoolean(7, track.isMuted());
+            if (analysis != null) {
+                trackStmt.setLong(8, analysis.getDurationMillis());
+                trackStmt.setFloat(9, analysis.getPeakDbfs());
+                trackStmt.setFloat(10, analysis.getRmsDbfs());
+                trackStmt.setFloat(11, analysis.getLoudnessLufs());
+                trackStmt.setBoolean(12, analysis.isSilent());
+            } else {
+                trackStmt.setNull(8, Types.BIGINT);
+                trackStmt.setNull(9, Types.FLOAT);
+                trackStmt.setNull(10, Types.FLOAT);
+                trackStmt.setNull(11, Types.FLOAT);
+                trackStmt.setNull(12, Types.BOOLEAN);
+            }
+            trackStmt.executeUpdate();
+
+            saveChunks(db, projectId, track.getTrackNumber(), audioData);
+        }
+    }
+
+    static int chunkCount(long length) {
+        return (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    static long checksum(byte[] audioData) {
+        CRC32 crc = new CRC32();
+        crc.update(audioData);
+        return crc.getValue();
+    }
+
+    /** One statement per chunk, so no single packet ever carries a whole take. */
+    private static void saveChunks(Connection db, int projectId, int trackNumber, byte[] audioData) throws SQLException {
+        String insertChunk = "INSERT INTO track_chunks (project_id, track_number, seq, data) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = db.prepareStatement(insertChunk)) {
+            for (int seq = 0; seq < chunkCount(audioData.length); seq++) {
+                int offset = seq * CHUNK_SIZE;
+                int length = Math.min(CHUNK_SIZE, audioData.length - offset);
+                stmt.setInt(1, projectId);
+                stmt.setInt(2, trackNumber);
+                stmt.setInt(3, seq);
+                stmt.setBinaryStream(4, new ByteArrayInputStream(audioData, offset, length), length);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /** @return how many tracks were served from the {@link TrackCache} */
+    public int loadProject(int projectId, List<LoopTrack> tracks) throws SQLException {
+        int fromCache = 0;
+        for (StoredTrack stored : loadTracks(projectId)) {
+            if (stored.isFromCache()) {
+                fromCache++;
+            }
+            LoopTrack track = tracks.get(stored.getTrackNumber() - 1);
+            track.setAudio(stored.getAudio(), stored.getAnalysis());
+            track.setVolume(stored.getVolume());
+            track.setMuted(stored.isMuted());
+        }
+        return fromCache;
+    }
+
+    /**
+     * Returns the project's tracks immediately. Audio still in the
+     * {@link TrackCache} for this version of the project is used as is;
+     * chunked audio keeps arriving in the background, so playback can begin
+     * after the first chunk; rows still holding a monolithic BLOB are moved
+     * to chunks on the way.
+     */
+    public List<StoredTrack> loadTracks(int projectId) throws SQLException {
+        return loadTracks(projectId, true);
+    }
+
+    /**
+     * @param migrate whether to move monolithic BLOBs to chunks; without it
+     *                nothing is written, and those tracks are read in the
+     *                background like chunked ones
+     * @see #loadTracks(int)
+     */
+    public List<StoredTrack> loadTracks(int projectId, boolean migrate) throws SQLException {
+        Timestamp lastModified = getLastModified(projectId);
+        if (lastModified == null) return new ArrayList<>();
+        long version = lastModified.getTime();
+        TrackCache cache = TrackCache.shared();
+
+        List<StoredTrack> tracks = new ArrayList<>();
+        List<StoredTrack> legacy = new ArrayList<>();
+        String selectTracks = "SELECT track_number, audio_length, chunk_count, volume, is_muted, "
+                + "duration_ms, peak_dbfs, rms_dbfs, loudness_lufs, OCTET_LENGTH(audio_data) AS blob_length "
+                + "FROM tracks WHERE project_id = ? ORDER BY track_number";
+        try (PreparedStatement stmt = connection.prepareStatement(selectTracks)) {
+            stmt.setInt(1, projectId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int trackNumber = rs.getInt("track_number");
+                    int chunkCount = rs.getInt("chunk_count");
+                    boolean chunked = !rs.wasNull();
+
+                    byte[] cached = cache.get(projectId, trackNumber, version);
+                    StreamingAudio audio;
+                    if (cached != null) {
+                        audio = StreamingAudio.of(cached);
+                    } else if (chunked) {
+                        audio = new StreamingAudio((int) rs.getLong("audio_length"));
+                        startPrefetch(projectId, trackNumber, chunkCount, audio);
+                        audio.completion().thenAccept(data -> cache.put(projectId, trackNumber, version, data));
+                    } else if (!migrate) {
+                        audio = new StreamingAudio((int) rs.getLong("blob_length"));
+                        startBlobLoad(projectId, trackNumber, audio);
+                        audio.completion().thenAccept(data -> cache.put(projectId, trackNumber, version, data));
+                    } else {
+                        audio = null;
+                    }
+
+                    StoredTrack track = new StoredTrack(
+                            trackNumber,
+                            audio,
+                            rs.getFloat("volume"),
+                            rs.getBoolean("is_muted"),
+                            readAnalysis(rs),
+                            cached != null
+                    );
+                    if (audio == null) {
+                        legacy.add(track);
+                    } else {
+                        tracks.add(track);
+                    }
+                }
+            }
+        }
+
+        for (StoredTrack track : legacy) {
+            byte[] audioData = readMonolithicAudio(projectId, track.getTrackNumber());
+            cache.put(projectId, track.getTrackNumber(), version, audioData);
+            migrateToChunks(projectId, track.getTrackNumber(), audioData);
+            tracks.add(track.withAudio(StreamingAudio.of(audioData)));
+        }
+        tracks.sort(Comparator.comparingInt(StoredTrack::getTrackNumber));
+        return tracks;
+    }
+
+    /** Seeds the cache with what was just saved, so reopening it is instant. */
+    private void cacheSavedTracks(int projectId, List<TrackSnapshot> tracks, List<byte[]> audio) throws SQLException {
+        Timestamp lastModified = getLastModified(projectId);
+        if (lastModified == null) return;
+
+        for (int i = 0; i < tracks.size(); i++) {
+            TrackCache.shared().put(projectId, tracks.get(i).getTrackNumber(), lastModified.getTime(), audio.get(i));
+        }
+    }
+
+    private void migrateToChunks(int projectId, int trackNumber, byte[] audioData) throws SQLException {
+        inTransaction(db -> {
+            saveChunks(db, projectId, trackNumber, audioData);
+            String update = "UPDATE tracks SET audio_data = NULL, audio_length = ?, chunk_count = ?, audio_crc32 = ? "
+                    + "WHERE project_id = ? AND track_number = ?";
+            try (PreparedStatement stmt = db.prepareStatement(update)) {
+                stmt.setLong(1, audioData.length);
+                stmt.setInt(2, chunkCount(audioData.length));
+                stmt.setLong(3, checksum(audioData));
+                stmt.setInt(4, projectId);
+                stmt.setInt(5, trackNumber);
+                stmt.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    private interface Transaction<T> {
+        T run(Connection db) throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} as one transaction on a connection of its own, so
+     * turning off autocommit never affects readers sharing the main
+     * connection.
+     */
+    private <T> T inTransaction(Transaction<T> work) throws SQLException {
+        try (Connection db = openConnection()) {
+            db.setAutoCommit(false);
+            try {
+                T result = work.run(db);
+                db.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                db.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    List<byte[]> readChunks(int projectId, int trackNumber, int firstSeq, int lastSeq) throws SQLException {
+        return readChunks(connection, projectId, trackNumber, firstSeq, lastSeq);
+    }
+
+    private static List<byte[]> readChunks(Connection db, int projectId, int trackNumber, int firstSeq, int lastSeq)
+            throws SQLException {
+        List<byte[]> chunks = new ArrayList<>();
+        String select = "SELECT seq, data FROM track_chunks "
+                + "WHERE project_id = ? AND track_number = ? AND seq BETWEEN ? AND ? ORDER BY seq";
+        try (PreparedStatement stmt = db.prepareStatement(select)) {
+            stmt.setInt(1, projectId);
+            stmt.setInt(2, trackNumber);
+            stmt.setInt(3, firstSeq);
+            stmt.setInt(4, lastSeq);
+            try (ResultSet rs = stmt.executeQuery()) {
+                int expected = firstSeq;
+                while (rs.next()) {
+                    if (rs.getInt("seq") != expected++) {
+                        throw new SQLException("Missing chunk " + (expected - 1) + " of track "
+                                + trackNumber + " in project " + projectId);
+                    }
+                    chunks.add(rs.getBytes("data"));
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Pulls a track's chunks a few at a time into {@code audio} on a
+     * background thread with a connection of its own, so loading never
+     * queues behind, or interleaves with, other users of the main one.
+     */
+    private void startPrefetch(int projectId, int trackNumber, int chunkCount, StreamingAudio audio) {
+        Thread prefetchThread = new Thread(() -> {
+            try (Connection loader = openConnection()) {
+                for (int seq = 0; seq < chunkCount; seq += PREFETCH_CHUNKS) {
+                    int lastSeq = Math.min(chunkCount, seq + PREFETCH_CHUNKS) - 1;
+                    List<byte[]> chunks = readChunks(loader, projectId, trackNumber, seq, lastSeq);
+                    if (chunks.size() != lastSeq - seq + 1) {
+                        throw new SQLException("Track " + trackNumber + " of project " + projectId
+                                + " has " + (seq + chunks.size()) + " of " + chunkCount + " chunks");
+                    }
+                    for (byte[] chunk : chunks) {
+                        audio.append(chunk, 0, chunk.length);
+                    }
+                }
+                if (!audio.isComplete()) {
+                    throw new SQLException("Track " + trackNumber + " of project " + projectId
+                            + " is shorter than its recorded length");
+                }
+            } catch (SQLException e) {
+                System.err.println("Loading track " + trackNumber + " failed: " + e.getMessage());
+                audio.fail(e);
+            }
+        }, "chunk-prefetch-" + projectId + "-" + trackNumber);
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    /** Reads a track still stored as one BLOB into {@code audio} on a background thread. */
+    private void startBlobLoad(int projectId, int trackNumber, StreamingAudio audio) {
+        Thread loadThread = new Thread(() -> {
+            try (Connection loader = openConnection()) {
+                byte[] audioData = readMonolithicAudio(loader, projectId, trackNumber);
+                if (audioData == null) {
+                    throw new SQLException("Track " + trackNumber + " of project " + projectId + " has no audio");
+                }
+                audio.append(audioData, 0, audioData.length);
+                if (!audio.isComplete()) {
+                    throw new SQLException("Track " + trackNumber + " of project " + projectId
+                            + " is shorter than its recorded length");
+                }
+            } catch (SQLException e) {
+                System.err.println("Loading track " + trackNumber + " failed: " + e.getMessage());
+                audio.fail(e);
+            }
+        }, "blob-load-" + projectId + "-" + trackNumber);
+        loadThread.setDaemon(true);
+        loadThread.start();
+    }
+
+    // ---- maintenance ----
+
+    public List<Integer> getProjectIdsAfter(int afterId, int limit) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String select = "SELECT id FROM projects WHERE id > ? ORDER BY id LIMIT ?";
+        try (PreparedStatement stmt = connection.prepareStatement(select)) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /** Storage layout of a project's tracks, without any audio. */
+    public List<TrackLayout> getTrackLayouts(int projectId) throws SQLException {
+        List<TrackLayout> layouts = new ArrayList<>();
+        String select = "SELECT track_number, audio_length, chunk_count, audio_crc32, "
+                + "CASE WHEN audio_data IS NULL THEN 0 ELSE 1 END AS has_blob "
+                + "FROM tracks WHERE project_id = ? ORDER BY track_number";
+        try (PreparedStatement stmt = connection.prepareStatement(select)) {
+            stmt.setInt(1, projectId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int trackNumber = rs.getInt("track_number");
+                    long audioLength = rs.getLong("audio_length");
+                    if (rs.wasNull()) audioLength = -1;
+                    int chunkCount = rs.getInt("chunk_count");
+                    if (rs.wasNull()) chunkCount = -1;
+                    long crc = rs.getLong("audio_crc32");
+                    if (rs.wasNull()) crc = -1;
+                    layouts.add(new TrackLayout(projectId, trackNumber, audioLength, chunkCount, crc,
+                            rs.getInt("has_blob") == 1));
+                }
+            }
+        }
+        return layouts;
+    }
+
+    public byte[] readMonolithicAudio(int projectId, int trackNumber) throws SQLException {
+        return readMonolithicAudio(connection, projectId, trackNumber);
+    }
+
+    private static byte[] readMonolithicAudio(Connection db, int projectId, int trackNumber) throws SQLException {
+        String select = "SELECT audio_data FROM tracks WHERE project_id = ? AND track_number = ?";
+        try (PreparedStatement stmt = db.prepareStatement(select)) {
+            stmt.setInt(1, projectId);
+            stmt.setInt(2, trackNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBytes("audio_data") : null;
+            }
+        }
+    }
+
+    public void updateChecksum(int projectId, int trackNumber, long crc) throws SQLException {
+        String update = "UPDATE tracks SET audio_crc32 = ? WHERE project_id = ? AND track_number = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(update)) {
+            stmt.setLong(1, crc);
+            stmt.setInt(2, projectId);
+            stmt.setInt(3, trackNumber);
+            stmt.executeUpdate();
+        }
+    }
+
+    public List<Integer> findEmptyProjects() throws SQLException {
+        return queryIds("SELECT p.id FROM projects p "
+                + "WHERE NOT EXISTS (SELECT 1 FROM tracks t WHERE t.project_id = p.id) ORDER BY p.id");
+    }
+
+    /** @return {@code {project_id, track_number}} pairs */
+    public List<int[]> findOrphanTracks() throws SQLException {
+        return queryPairs("SELECT DISTINCT t.project_id, t.track_number FROM tracks t "
+                + "WHERE NOT EXISTS (SELECT 1 FROM projects p WHERE p.id = t.project_id)");
+    }
+
+    public List<int[]> findOrphanChunks() throws SQLException {
+        return queryPairs("SELECT DISTINCT c.project_id, c.track_number FROM track_chunks c "
+                + "WHERE NOT EXISTS (SELECT 1 FROM tracks t "
+                + "WHERE t.project_id = c.project_id AND t.track_number = c.track_number)");
+    }
+
+    public void deleteProject(int projectId) throws SQLException {
+        String[] deletes = {
+                "DELETE FROM track_chunks WHERE project_id = ?",
+                "DELETE FROM tracks WHERE project_id = ?",
+                "DELETE FROM projects WHERE id = ?"
+        };
+        for (String delete : deletes) {
+            try (PreparedStatement stmt = connection.prepareStatement(delete)) {
+                stmt.setInt(1, projectId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    public void deleteTrack(int projectId, int trackNumber) throws SQLException {
+        String[] deletes = {
+                "DELETE FROM track_chunks WHERE project_id = ? AND track_number = ?",
+                "DELETE FROM tracks WHERE project_id = ? AND track_number = ?"
+        };
+        for (String delete : deletes) {
+            try (PreparedStatement stmt = connection.prepareStatement(delete)) {
+                stmt.setInt(1, projectId);
+                stmt.setInt(2, trackNumber);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    private List<Integer> queryIds(String select) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(select)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private List<int[]> queryPairs(String select) throws SQLException {
+        List<int[]> pairs = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(select)) {
+            while (rs.next()) {
+                pairs.add(new int[]{rs.getInt(1), rs.getInt(2)});
+            }
+        }
+        return pairs;
+    }
+
+    private TrackAnalysis readAnalysis(ResultSet rs) throws SQLException {
+        long durationMillis = rs.getLong("duration_ms");
+        if (rs.wasNull()) return null;
+        return new TrackAnalysis(durationMillis, rs.getFloat("peak_dbfs"),
+                rs.getFloat("rms_dbfs"), rs.getFloat("loudness_lufs"));
+    }
+
+    /**
+     * @return the project's last-modified time, or {@code null} if there is
+     * no such project
+     */
+    public Timestamp getLastModified(int projectId) throws SQLException {
+        String select = "SELECT last_modified FROM projects WHERE id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(select)) {
+            stmt.setInt(1, projectId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getTimestamp("last_modified") : null;
+            }
+        }
+    }
+
+    public List<ProjectInfo> getAllProjects() throws SQLException {
+        return findProjects(0, false);
+    }
+
+    /**
+     * Lists projects with their track metadata aggregated from the analysis
+     * columns, so no audio is read.
+     *
+     * @param minDurationMillis only projects whose longest track is at least this long
+     * @param audibleOnly       skip projects whose tracks are all silent
+     */
+    public List<ProjectInfo> findProjects(long minDurationMillis, boolean audibleOnly) throws SQLException {
+        List<ProjectInfo> projects = new ArrayList<>();
+        String select = "SELECT p.id, p.name, p.created_at, p.last_modified, "
+                + "COUNT(t.track_number) AS track_count, "
+                + "MAX(t.duration_ms) AS duration_ms, "
+                + "MAX(t.loudness_lufs) AS loudness_lufs, "
+                + "SUM(CASE WHEN t.is_silent THEN 1 ELSE 0 END) AS silent_tracks "
+                + "FROM projects p LEFT JOIN tracks t ON t.project_id = p.id "
+                + "GROUP BY p.id, p.name, p.created_at, p.last_modified "
+                + "HAVING COALESCE(MAX(t.duration_ms), 0) >= ? "
+                + (audibleOnly ? "AND COUNT(t.track_number) > SUM(CASE WHEN t.is_silent THEN 1 ELSE 0 END) " : "")
+                + "ORDER BY p.last_modified DESC";
+
+        try (PreparedStatement stmt = connection.prepareStatement(select)) {
+            stmt.setLong(1, minDurationMillis);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ProjectInfo project = new ProjectInfo(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getTimestamp("created_at"),
+                            rs.getTimestamp("last_modified")
+                    );
+                    long durationMillis = rs.getLong("duration_ms");
+                    boolean analyzed = !rs.wasNull();
+                    project.setTrackSummary(rs.getInt("track_count"), rs.getInt("silent_tracks"),
+                            analyzed ? durationMillis : -1, rs.getFloat("loudness_lufs"));
+                    projects.add(project);
+                }
+            }
+        }
+
+        return projects;
+    }
+
+    public void close() {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,21 +1,26 @@
 package com.example.demo;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
-import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DigitalLoopstation extends Application {
 
@@ -31,15 +36,32 @@ public class DigitalLoopstation extends Application {
     private Button clearAllButton;
     private Button saveProjectButton;
     private Button loadProjectButton;
+    private Button importButton;
+    private Button exportButton;
     private Label statusLabel;
+    private Label databaseStatusLabel;
+    private Label audioStatusLabel;
     private VBox tracksContainer;
 
     private AudioRecorder audioRecorder;
     private List<LoopTrack> loopTracks;
     private boolean isPlayingAll = false;
     private DatabaseManager dbManager;
+    private final AudioBackend audioBackend = AudioBackend.fromSystemProperty();
     private Integer currentProjectId = null;
     private String currentProjectName = null;
+    private LoopTrack overdubTrack = null;
+    private int overdubPhase;
+    private double overdubTempo;
+    private boolean canRecord = false;
+
+    private volatile long databaseReadyMillis = -1;
+    private volatile long audioReadyMillis = -1;
+
+    private LevelMeterView masterMeterView;
+    private Slider tempoSlider;
+    private AnimationTimer meterTimer;
+    private final AtomicReference<Runnable> pendingStatus = new AtomicReference<>();
 
     @Override
     public void start(Stage primaryStage) {
@@ -62,7 +84,8 @@ public class DigitalLoopstation extends Application {
         tracksContainer.setPadding(new Insets(20, 0, 0, 0));
 
         for (int i = 0; i < MAX_TRACKS; i++) {
-            LoopTrack track = new LoopTrack(i + 1);
+            LoopTrack track = new LoopTrack(i + 1, audioBackend);
+            track.setOnOverdub(this::startOverdub);
             loopTracks.add(track);
             tracksContainer.getChildren().add(track.getTrackPane());
         }
@@ -79,7 +102,81 @@ public class DigitalLoopstation extends Application {
         primaryStage.setTitle("Digital Loopstation");
         primaryStage.setScene(scene);
         primaryStage.setOnCloseRequest(e -> cleanup());
+
+        Runnable firstFrame = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                StartupMetrics.markFirstFrame();
+            }
+        };
+        scene.addPostLayoutPulseListener(firstFrame);
         primaryStage.show();
+
+        meterTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                refreshMeters(now);
+            }
+        };
+        meterTimer.start();
+
+        initializeInBackground();
+    }
+
+    private void initializeInBackground() {
+        Thread databaseThread = new Thread(() -> {
+            long started = System.currentTimeMillis();
+            boolean connected = dbManager.connect();
+            databaseReadyMillis = System.currentTimeMillis() - started;
+            Platform.runLater(() -> {
+                setReadiness(databaseStatusLabel, connected ? "Database: connected" : "Database: offline", connected);
+                saveProjectButton.setDisable(!connected);
+                loadProjectButton.setDisable(!connected);
+                checkReady();
+            });
+        }, "startup-database");
+
+        Thread audioThread = new Thread(() -> {
+            long started = System.currentTimeMillis();
+            boolean hasInput = audioBackend.supportsInput(AUDIO_FORMAT);
+            boolean canPlay = audioBackend.supportsOutput(AUDIO_FORMAT);
+            audioReadyMillis = System.currentTimeMillis() - started;
+            Platform.runLater(() -> {
+                canRecord = hasInput;
+                String text = canRecord && canPlay ? "Audio: ready (" + audioBackend.getName() + ")"
+                        : canPlay ? "Audio: no input device"
+                        : canRecord ? "Audio: no output device"
+                        : "Audio: no devices";
+                setReadiness(audioStatusLabel, text, canRecord && canPlay);
+                recordButton.setDisable(!canRecord);
+                for (LoopTrack track : loopTracks) {
+                    track.setCanOverdub(canRecord);
+                }
+                checkReady();
+            });
+        }, "startup-audio");
+
+        databaseThread.setDaemon(true);
+        audioThread.setDaemon(true);
+        databaseThread.start();
+        audioThread.start();
+    }
+
+    private void checkReady() {
+        if (databaseReadyMillis < 0 || audioReadyMillis < 0) return;
+
+        int exitStatus = StartupMetrics.markReady(databaseReadyMillis, audioReadyMillis);
+        if (exitStatus >= 0) {
+            cleanup();
+            Platform.exit();
+            System.exit(exitStatus);
+        }
+    }
+
+    private void setReadiness(Label label, String text, boolean ok) {
+        label.setText(text);
+        label.setStyle("-fx-font-size: 12px; -fx-text-fill: " + (ok ? "#4CAF50" : "#FF9800") + ";");
     }
 
     private VBox createControlPanel() {
@@ -114,12 +211,56 @@ public class DigitalLoopstation extends Application {
         saveProjectButton = createStyledButton("💾 Save Project", "#2196F3");
         loadProjectButton = createStyledButton("📂 Load Project", "#9C27B0");
 
+        importButton = createStyledButton("📥 Import", "#607D8B");
+        exportButton = createStyledButton("📤 Export", "#607D8B");
+
         saveProjectButton.setOnAction(e -> saveProject());
         loadProjectButton.setOnAction(e -> loadProject());
+        importButton.setOnAction(e -> importAudio());
+        exportButton.setOnAction(e -> exportAudio());
 
-        buttonsBox2.getChildren().addAll(saveProjectButton, loadProjectButton);
+        buttonsBox2.getChildren().addAll(saveProjectButton, loadProjectButton, importButton, exportButton);
+
+        // Disabled until the background startup checks report in
+        recordButton.setDisable(true);
+        saveProjectButton.setDisable(true);
+        loadProjectButton.setDisable(true);
+
+        databaseStatusLabel = new Label("Database: connecting...");
+        audioStatusLabel = new Label("Audio: detecting devices...");
+        databaseStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #888;");
+        audioStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #888;");
+
+        HBox readinessBox = new HBox(20, databaseStatusLabel, audioStatusLabel);
+        readinessBox.setAlignment(Pos.CENTER);
+
+        Label masterLabel = new Label("Master");
+        masterLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #888;");
+        masterMeterView = new LevelMeterView(400, 14);
+        HBox masterBox = new HBox(10, masterLabel, masterMeterView);
+        masterBox.setAlignment(Pos.CENTER);
+
+        Label tempoLabel = new Label("Tempo 100%");
+        tempoLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #888; -fx-min-width: 80;");
+        tempoSlider = new Slider(TimeStretch.MIN_TEMPO * 100, TimeStretch.MAX_TEMPO * 100, 100);
+        tempoSlider.setPrefWidth(400);
+        tempoSlider.setBlockIncrement(5);
+        tempoSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            int percent = (int) Math.round(newVal.doubleValue());
+            tempoLabel.setText("Tempo " + percent + "%");
+            for (LoopTrack track : loopTracks) {
+                track.setTempo(percent / 100.0);
+            }
+        });
+        tempoLabel.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                tempoSlider.setValue(100);
+            }
+        });
+        HBox tempoBox = new HBox(10, tempoLabel, tempoSlider);
+        tempoBox.setAlignment(Pos.CENTER);
 
-        panel.getChildren().addAll(statusLabel, buttonsBox1, buttonsBox2);
+        panel.getChildren().addAll(statusLabel, masterBox, tempoBox, buttonsBox1, buttonsBox2, readinessBox);
 
         return panel;
     }
@@ -154,8 +295,12 @@ public class DigitalLoopstation extends Application {
             return;
         }
 
-        audioRecorder = new AudioRecorder(AUDIO_FORMAT);
-        audioRecorder.startRecording();
+        AudioRecorder recorder = new AudioRecorder(AUDIO_FORMAT, audioBackend);
+        if (!recorder.startRecording()) {
+            updateStatus("Could not open the input device", true);
+            return;
+        }
+        audioRecorder = recorder;
 
         recordButton.setDisable(true);
         stopRecordButton.setDisable(false);
@@ -166,8 +311,72 @@ public class DigitalLoopstation extends Application {
         recordButton.setStyle(recordButton.getStyle() + "-fx-background-color: #d32f2f;");
     }
 
+    /**
+     * Records passes over an existing loop. Each time the recording wraps
+     * around the loop the pass becomes a take, so it is heard on the next
+     * time round while the following pass is recorded.
+     */
+    private void startOverdub(LoopTrack track) {
+        if (!canRecord || audioRecorder != null) {
+            updateStatus("Cannot overdub right now", true);
+            return;
+        }
+
+        int phase = track.beginOverdub();
+        // Passes are recorded at the playback tempo and stretched back to the loop's own
+        double tempo = Math.round(tempoSlider.getValue()) / 100.0;
+        int frameSize = AUDIO_FORMAT.getFrameSize();
+        int passLength = (int) Math.round(track.getLoopLength() / frameSize / tempo) * frameSize;
+
+        AudioRecorder recorder = new AudioRecorder(AUDIO_FORMAT, audioBackend);
+        recorder.setPassListener(passLength, pass -> addOverdubPass(track, pass, phase, tempo, false));
+        if (!recorder.startRecording()) {
+            updateStatus("Could not open the input device", true);
+            return;
+        }
+        audioRecorder = recorder;
+        overdubTrack = track;
+        overdubPhase = phase;
+        overdubTempo = tempo;
+        tempoSlider.setDisable(true);
+
+        recordButton.setDisable(true);
+        stopRecordButton.setDisable(false);
+        playAllButton.setDisable(true);
+        clearAllButton.setDisable(true);
+
+        updateStatus("Overdubbing Track " + track.getTrackNumber() + "...", false);
+        recordButton.setStyle(recordButton.getStyle() + "-fx-background-color: #d32f2f;");
+    }
+
+    /**
+     * Stretches a pass recorded at {@code tempo} back to the loop's own tempo
+     * and adds it as a take. Every pass goes through the same single render
+     * thread, so takes are added in the order they were recorded.
+     */
+    private void addOverdubPass(LoopTrack track, byte[] pass, int phase, double tempo, boolean last) {
+        CompletableFuture<byte[]> stretched = tempo == 1.0 || pass == null || pass.length == 0
+                ? CompletableFuture.completedFuture(pass)
+                : TimeStretch.renderOnceAsync(pass, 1 / tempo);
+        stretched.thenAccept(take -> Platform.runLater(() -> {
+            if (take != null && take.length > 0) {
+                track.addTake(take, phase);
+            }
+            updateStatus((last ? "Overdub saved to Track " : "Overdubbing Track ") + track.getTrackNumber()
+                    + " (" + track.getTakeCount() + " takes)" + (last ? "" : "..."), false);
+        })).exceptionally(e -> {
+            System.err.println("Stretching overdub pass failed: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        });
+    }
+
     private void stopRecording() {
-        if (audioRecorder != null) {
+        if (audioRecorder != null && overdubTrack != null) {
+            byte[] lastPass = audioRecorder.stopRecording();
+            addOverdubPass(overdubTrack, lastPass, overdubPhase, overdubTempo, true);
+            tempoSlider.setDisable(false);
+        } else if (audioRecorder != null) {
             byte[] audioData = audioRecorder.stopRecording();
 
             if (audioData != null && audioData.length > 0) {
@@ -190,6 +399,7 @@ public class DigitalLoopstation extends Application {
 
         recordButton.setStyle(createStyledButton("🎙️ Record", "#f44336").getStyle());
         audioRecorder = null;
+        overdubTrack = null;
     }
 
     private void togglePlayAll() {
@@ -266,19 +476,45 @@ public class DigitalLoopstation extends Application {
                 return;
             }
 
-            try {
-                if (currentProjectId != null) {
-                    dbManager.updateProject(currentProjectId, name, loopTracks);
-                    updateStatus("Project '" + name + "' updated successfully!", false);
-                } else {
-                    currentProjectId = dbManager.saveProject(name, loopTracks);
-                    updateStatus("Project '" + name + "' saved successfully!", false);
+            // Waits for tracks still loading or being analyzed, so it runs off the FX
+            // thread on a snapshot; the tracks can be played, cleared or re-recorded meanwhile
+            List<TrackSnapshot> snapshots = loopTracks.stream()
+                    .map(LoopTrack::snapshot)
+                    .filter(Objects::nonNull)
+                    .toList();
+            Integer projectId = currentProjectId;
+            saveProjectButton.setDisable(true);
+            loadProjectButton.setDisable(true);
+            updateStatus("Saving project '" + name + "'...", false);
+
+            Thread saveThread = new Thread(() -> {
+                try {
+                    if (projectId != null) {
+                        dbManager.updateProject(projectId, name, snapshots);
+                        Platform.runLater(() -> currentProjectName = name);
+                        updateStatus("Project '" + name + "' updated successfully!", false);
+                    } else {
+                        int savedId = dbManager.saveProject(name, snapshots);
+                        Platform.runLater(() -> {
+                            currentProjectId = savedId;
+                            currentProjectName = name;
+                        });
+                        updateStatus("Project '" + name + "' saved successfully!", false);
+                    }
+                } catch (SQLException e) {
+                    updateStatus("Error saving project: " + e.getMessage(), true);
+                    e.printStackTrace();
+                } catch (IOException e) {
+                    updateStatus("Project not saved. " + e.getMessage(), true);
+                    e.printStackTrace();
                 }
-                currentProjectName = name;
-            } catch (SQLException e) {
-                updateStatus("Error saving project: " + e.getMessage(), true);
-                e.printStackTrace();
-            }
+                Platform.runLater(() -> {
+                    saveProjectButton.setDisable(false);
+                    loadProjectButton.setDisable(false);
+                });
+            }, "project-save");
+            saveThread.setDaemon(true);
+            saveThread.start();
         });
     }
 
@@ -291,12 +527,7 @@ public class DigitalLoopstation extends Application {
                 return;
             }
 
-            ChoiceDialog<ProjectInfo> dialog = new ChoiceDialog<>(projects.get(0), projects);
-            dialog.setTitle("Load Project");
-            dialog.setHeaderText("Select a project to load");
-            dialog.setContentText("Choose project:");
-
-            Optional<ProjectInfo> result = dialog.showAndWait();
+            Optional<ProjectInfo> result = chooseProject(projects);
             result.ifPresent(project -> {
                 try {
                     stopAllTracks();
@@ -305,11 +536,12 @@ public class DigitalLoopstation extends Application {
                         track.clear();
                     }
 
-                    dbManager.loadProject(project.getId(), loopTracks);
+                    int fromCache = dbManager.loadProject(project.getId(), loopTracks);
                     currentProjectId = project.getId();
                     currentProjectName = project.getName();
 
-                    updateStatus("Project '" + project.getName() + "' loaded successfully!", false);
+                    updateStatus("Project '" + project.getName() + "' loaded successfully!"
+                            + (fromCache > 0 ? " (" + fromCache + " tracks from cache)" : ""), false);
                 } catch (SQLException e) {
                     updateStatus("Error loading project: " + e.getMessage(), true);
                     e.printStackTrace();
@@ -321,533 +553,217 @@ public class DigitalLoopstation extends Application {
         }
     }
 
-    private void updateStatus(String message, boolean isError) {
-        Platform.runLater(() -> {
-            statusLabel.setText(message);
-            statusLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: " +
-                    (isError ? "#f44336" : "#4CAF50") + ";");
-        });
-    }
-
-    private void cleanup() {
-        if (audioRecorder != null) {
-            audioRecorder.stopRecording();
-        }
-        for (LoopTrack track : loopTracks) {
-            track.stop();
-        }
-        dbManager.close();
-    }
-
-    public static void main(String[] args) {
-        launch(args);
-    }
-}
+    /**
+     * Project picker whose list can be narrowed by track length and by
+     * hiding projects that are all silence, using the stored analysis.
+     */
+    private Optional<ProjectInfo> chooseProject(List<ProjectInfo> projects) {
+        Dialog<ProjectInfo> dialog = new Dialog<>();
+        dialog.setTitle("Load Project");
+        dialog.setHeaderText("Select a project to load");
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
 
-class DatabaseManager {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/loopstation_db";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "Guihan26";
+        ListView<ProjectInfo> projectList = new ListView<>(FXCollections.observableArrayList(projects));
+        projectList.setPrefSize(560, 240);
+        projectList.getSelectionModel().selectFirst();
 
-    private Connection connection;
+        long[] minDurations = {0, 5_000, 30_000, 60_000};
+        ChoiceBox<String> minDuration = new ChoiceBox<>(FXCollections.observableArrayList(
+                "Any length", "At least 5 s", "At least 30 s", "At least 1 min"));
+        minDuration.getSelectionModel().selectFirst();
+        CheckBox audibleOnly = new CheckBox("Hide silent projects");
 
-    public DatabaseManager() {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            System.out.println("Database connected successfully!");
-        } catch (ClassNotFoundException e) {
-            System.err.println("MySQL JDBC Driver not found!");
-            e.printStackTrace();
-        } catch (SQLException e) {
-            System.err.println("Database connection failed!");
-            e.printStackTrace();
-        }
+        Runnable refresh = () -> {
+            try {
+                long minMillis = minDurations[minDuration.getSelectionModel().getSelectedIndex()];
+                projectList.getItems().setAll(dbManager.findProjects(minMillis, audibleOnly.isSelected()));
+                projectList.getSelectionModel().selectFirst();
+            } catch (SQLException e) {
+                updateStatus("Error retrieving projects: " + e.getMessage(), true);
+                e.printStackTrace();
+            }
+        };
+        minDuration.setOnAction(e -> refresh.run());
+        audibleOnly.setOnAction(e -> refresh.run());
+
+        HBox filters = new HBox(10, minDuration, audibleOnly);
+        filters.setAlignment(Pos.CENTER_LEFT);
+        dialog.getDialogPane().setContent(new VBox(10, filters, projectList));
+        dialog.getDialogPane().lookupButton(ButtonType.OK).disableProperty()
+                .bind(projectList.getSelectionModel().selectedItemProperty().isNull());
+        dialog.setResultConverter(button -> button == ButtonType.OK
+                ? projectList.getSelectionModel().getSelectedItem()
+                : null);
+
+        return dialog.showAndWait();
+    }
+
+    private FileChooser createAudioFileChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("WAV audio", "*.wav"),
+                new FileChooser.ExtensionFilter("AIFF audio", "*.aif", "*.aiff")
+        );
+        return chooser;
     }
 
-    public int saveProject(String projectName, List<LoopTrack> tracks) throws SQLException {
-        String insertProject = "INSERT INTO projects (name) VALUES (?)";
-        PreparedStatement projectStmt = connection.prepareStatement(insertProject, Statement.RETURN_GENERATED_KEYS);
-        projectStmt.setString(1, projectName);
-        projectStmt.executeUpdate();
+    private void importAudio() {
+        LoopTrack availableTrack = loopTracks.stream()
+                .filter(track -> !track.hasAudio())
+                .findFirst()
+                .orElse(null);
 
-        ResultSet rs = projectStmt.getGeneratedKeys();
-        int projectId = 0;
-        if (rs.next()) {
-            projectId = rs.getInt(1);
+        if (availableTrack == null) {
+            updateStatus("All tracks are full. Clear a track first.", true);
+            return;
         }
 
-        saveTracks(projectId, tracks);
+        FileChooser chooser = createAudioFileChooser("Import Audio");
+        chooser.getExtensionFilters().add(0,
+                new FileChooser.ExtensionFilter("Audio files", "*.wav", "*.aif", "*.aiff"));
+        File file = chooser.showOpenDialog(importButton.getScene().getWindow());
+        if (file == null) return;
 
-        return projectId;
-    }
+        importButton.setDisable(true);
+        updateStatus("Importing '" + file.getName() + "'...", false);
 
-    public void updateProject(int projectId, String projectName, List<LoopTrack> tracks) throws SQLException {
-        // Update project name
-        String updateProject = "UPDATE projects SET name = ?, last_modified = CURRENT_TIMESTAMP WHERE id = ?";
-        PreparedStatement stmt = connection.prepareStatement(updateProject);
-        stmt.setString(1, projectName);
-        stmt.setInt(2, projectId);
-        stmt.executeUpdate();
-
-        // Delete old tracks
-        String deleteTracks = "DELETE FROM tracks WHERE project_id = ?";
-        PreparedStatement deleteStmt = connection.prepareStatement(deleteTracks);
-        deleteStmt.setInt(1, projectId);
-        deleteStmt.executeUpdate();
-
-        // Save new tracks
-        saveTracks(projectId, tracks);
+        Thread importThread = new Thread(() -> {
+            try {
+                byte[] audioData = AudioFileIO.importTrack(file, AUDIO_FORMAT);
+                Platform.runLater(() -> {
+                    if (availableTrack.hasAudio()) {
+                        updateStatus("Track " + availableTrack.getTrackNumber() + " was filled during import", true);
+                    } else {
+                        availableTrack.setAudioData(audioData);
+                        updateStatus("Imported '" + file.getName() + "' to Track " + availableTrack.getTrackNumber(), false);
+                    }
+                    importButton.setDisable(false);
+                });
+            } catch (IOException | UnsupportedAudioFileException e) {
+                updateStatus("Error importing audio: " + e.getMessage(), true);
+                Platform.runLater(() -> importButton.setDisable(false));
+                e.printStackTrace();
+            }
+        });
+        importThread.setDaemon(true);
+        importThread.start();
     }
 
-    private void saveTracks(int projectId, List<LoopTrack> tracks) throws SQLException {
-        String insertTrack = "INSERT INTO tracks (project_id, track_number, audio_data, volume, is_muted) VALUES (?, ?, ?, ?, ?)";
-
-        for (LoopTrack track : tracks) {
+    private void exportAudio() {
+        List<String> choices = new ArrayList<>();
+        choices.add("Mixdown");
+        for (LoopTrack track : loopTracks) {
             if (track.hasAudio()) {
-                PreparedStatement trackStmt = connection.prepareStatement(insertTrack);
-                trackStmt.setInt(1, projectId);
-                trackStmt.setInt(2, track.getTrackNumber());
-                trackStmt.setBytes(3, track.getAudioData());
-                trackStmt.setFloat(4, track.getVolume());
-                trackStmt.setBoolean(5, track.isMuted());
-                trackStmt.executeUpdate();
+                choices.add("Track " + track.getTrackNumber());
             }
         }
-    }
-
-    public void loadProject(int projectId, List<LoopTrack> tracks) throws SQLException {
-        String selectTracks = "SELECT track_number, audio_data, volume, is_muted FROM tracks WHERE project_id = ?";
-        PreparedStatement stmt = connection.prepareStatement(selectTracks);
-        stmt.setInt(1, projectId);
-        ResultSet rs = stmt.executeQuery();
-
-        while (rs.next()) {
-            int trackNumber = rs.getInt("track_number");
-            byte[] audioData = rs.getBytes("audio_data");
-            float volume = rs.getFloat("volume");
-            boolean isMuted = rs.getBoolean("is_muted");
-
-            LoopTrack track = tracks.get(trackNumber - 1);
-            track.setAudioData(audioData);
-            track.setVolume(volume);
-            track.setMuted(isMuted);
-        }
-    }
-
-    public List<ProjectInfo> getAllProjects() throws SQLException {
-        List<ProjectInfo> projects = new ArrayList<>();
-        String select = "SELECT id, name, created_at, last_modified FROM projects ORDER BY last_modified DESC";
-        Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(select);
-
-        while (rs.next()) {
-            projects.add(new ProjectInfo(
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getTimestamp("created_at"),
-                    rs.getTimestamp("last_modified")
-            ));
-        }
 
-        return projects;
-    }
-
-    public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (choices.size() == 1) {
+            updateStatus("No audio to export. Record something first!", true);
+            return;
         }
-    }
-}
 
-class ProjectInfo {
-    private int id;
-    private String name;
-    private Timestamp createdAt;
-    private Timestamp lastModified;
-
-    public ProjectInfo(int id, String name, Timestamp createdAt, Timestamp lastModified) {
-        this.id = id;
-        this.name = name;
-        this.createdAt = createdAt;
-        this.lastModified = lastModified;
-    }
-
-    public int getId() {
-        return id;
-    }
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(choices.get(0), choices);
+        dialog.setTitle("Export Audio");
+        dialog.setHeaderText("Export a mixdown or a single track");
+        dialog.setContentText("Export:");
 
-    public String getName() {
-        return name;
-    }
-
-    @Override
-    public String toString() {
-        return name + " (Modified: " + lastModified + ")";
-    }
-}
-
-class AudioRecorder {
-    private TargetDataLine targetLine;
-    private ByteArrayOutputStream recordedData;
-    private Thread recordingThread;
-    private volatile boolean isRecording = false;
+        Optional<String> result = dialog.showAndWait();
+        if (result.isEmpty()) return;
 
-    public AudioRecorder(AudioFormat format) {
-        try {
-            DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
-            if (!AudioSystem.isLineSupported(info)) {
-                System.err.println("Line not supported");
-                return;
-            }
-            targetLine = (TargetDataLine) AudioSystem.getLine(info);
-        } catch (LineUnavailableException e) {
-            e.printStackTrace();
-        }
-    }
+        FileChooser chooser = createAudioFileChooser("Export Audio");
+        chooser.setInitialFileName((currentProjectName != null ? currentProjectName : "loopstation")
+                + " - " + result.get() + ".wav");
+        File file = chooser.showSaveDialog(exportButton.getScene().getWindow());
+        if (file == null) return;
 
-    public void startRecording() {
+        Mixdown mixdown = null;
+        byte[] trackData = null;
         try {
-            recordedData = new ByteArrayOutputStream();
-            targetLine.open();
-            targetLine.start();
-            isRecording = true;
-
-            recordingThread = new Thread(() -> {
-                byte[] buffer = new byte[4096];
-                while (isRecording) {
-                    int bytesRead = targetLine.read(buffer, 0, buffer.length);
-                    if (bytesRead > 0) {
-                        recordedData.write(buffer, 0, bytesRead);
+            if (result.get().equals("Mixdown")) {
+                mixdown = new Mixdown(AUDIO_FORMAT);
+                for (LoopTrack track : loopTracks) {
+                    if (track.hasAudio()) {
+                        mixdown.addTrack(track.getAudioData(), track.getVolume(), track.isMuted());
                     }
                 }
-            });
-            recordingThread.start();
-
-        } catch (LineUnavailableException e) {
-            e.printStackTrace();
-        }
-    }
-
-    public byte[] stopRecording() {
-        isRecording = false;
-
-        if (recordingThread != null) {
-            try {
-                recordingThread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            } else {
+                int trackNumber = Integer.parseInt(result.get().substring("Track ".length()));
+                trackData = loopTracks.get(trackNumber - 1).getAudioData();
             }
-        }
-
-        if (targetLine != null) {
-            targetLine.stop();
-            targetLine.close();
-        }
-
-        return recordedData != null ? recordedData.toByteArray() : null;
-    }
-}
-
-class AudioPlayer {
-    private SourceDataLine sourceLine;
-    private byte[] audioData;
-    private AudioFormat format;
-    private Thread playbackThread;
-    private volatile boolean isPlaying = false;
-    private volatile boolean isMuted = false;
-    private volatile float volume = 1.0f;
-
-    public AudioPlayer(byte[] audioData, AudioFormat format) {
-        this.audioData = audioData;
-        this.format = format;
-        initializeLine();
-    }
-
-    private void initializeLine() {
-        try {
-            DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
-            sourceLine = (SourceDataLine) AudioSystem.getLine(info);
-            sourceLine.open(format);
-        } catch (LineUnavailableException e) {
+        } catch (UncheckedIOException e) {
+            updateStatus("Cannot export: a track did not load. " + e.getCause().getMessage(), true);
             e.printStackTrace();
+            return;
         }
-    }
-
-    public void play() {
-        if (isPlaying) return;
 
-        isPlaying = true;
-        sourceLine.start();
+        Mixdown finalMixdown = mixdown;
+        byte[] finalTrackData = trackData;
+        exportButton.setDisable(true);
+        updateStatus("Exporting '" + file.getName() + "'...", false);
 
-        playbackThread = new Thread(() -> {
-            while (isPlaying) {
-                try {
-                    ByteArrayInputStream bais = new ByteArrayInputStream(audioData);
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-
-                    while (isPlaying && (bytesRead = bais.read(buffer)) != -1) {
-                        if (!isMuted && volume > 0) {
-                            byte[] adjustedBuffer = applyVolume(buffer, bytesRead);
-                            sourceLine.write(adjustedBuffer, 0, bytesRead);
-                        } else {
-                            Thread.sleep(bytesRead * 1000L / (long)(format.getSampleRate() * format.getFrameSize()));
-                        }
-                    }
-                } catch (IOException | InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
-        playbackThread.start();
-    }
-
-    private byte[] applyVolume(byte[] buffer, int length) {
-        byte[] adjusted = new byte[length];
-
-        for (int i = 0; i < length - 1; i += 2) {
-            short sample = (short)((buffer[i + 1] << 8) | (buffer[i] & 0xFF));
-            float processedSample = sample * volume;
-            processedSample = Math.max(-32768, Math.min(32767, processedSample));
-
-            short finalSample = (short)processedSample;
-            adjusted[i] = (byte)(finalSample & 0xFF);
-            adjusted[i + 1] = (byte)((finalSample >> 8) & 0xFF);
-        }
-        return adjusted;
-    }
-
-    public void stop() {
-        isPlaying = false;
-        if (playbackThread != null) {
+        Thread exportThread = new Thread(() -> {
             try {
-                playbackThread.join();
-            } catch (InterruptedException e) {
+                if (finalMixdown != null) {
+                    AudioFileIO.exportMixdown(finalMixdown, file.toPath());
+                } else {
+                    AudioFileIO.exportTrack(finalTrackData, AUDIO_FORMAT, file.toPath());
+                }
+                updateStatus("Exported '" + file.getName() + "'", false);
+            } catch (IOException e) {
+                updateStatus("Error exporting audio: " + e.getMessage(), true);
                 e.printStackTrace();
             }
-        }
-        if (sourceLine != null) {
-            sourceLine.stop();
-        }
-    }
-
-    public void close() {
-        stop();
-        if (sourceLine != null) {
-            sourceLine.close();
-        }
-    }
-
-    public void setMuted(boolean muted) {
-        this.isMuted = muted;
-    }
-
-    public void setVolume(float volume) {
-        this.volume = Math.max(0.0f, Math.min(1.0f, volume));
-    }
-
-    public boolean isPlaying() {
-        return isPlaying;
-    }
-}
-
-class LoopTrack {
-    private int trackNumber;
-    private byte[] audioData;
-    private AudioPlayer audioPlayer;
-    private Pane trackPane;
-
-    private Button playButton;
-    private Button muteButton;
-    private Slider volumeSlider;
-    private Button deleteButton;
-    private ProgressBar waveformBar;
-    private Label trackLabel;
-
-    private boolean isMuted = false;
-    private static final AudioFormat AUDIO_FORMAT = new AudioFormat(44100.0f, 16, 1, true, false);
-
-    public LoopTrack(int trackNumber) {
-        this.trackNumber = trackNumber;
-        createTrackPane();
-    }
-
-    private void createTrackPane() {
-        HBox mainBox = new HBox(15);
-        mainBox.setAlignment(Pos.CENTER_LEFT);
-        mainBox.setPadding(new Insets(15));
-        mainBox.setStyle("-fx-background-color: #3a3a3a; -fx-background-radius: 8;");
-
-        trackLabel = new Label("Track " + trackNumber);
-        trackLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #888; -fx-min-width: 80;");
-
-        waveformBar = new ProgressBar(0);
-        waveformBar.setPrefWidth(150);
-        waveformBar.setPrefHeight(30);
-        waveformBar.setStyle("-fx-accent: #4CAF50;");
-
-        playButton = createTrackButton("▶️");
-        playButton.setOnAction(e -> togglePlay());
-        playButton.setDisable(true);
-
-        muteButton = createTrackButton("🔊");
-        muteButton.setOnAction(e -> toggleMute());
-        muteButton.setDisable(true);
-
-        deleteButton = createTrackButton("🗑️");
-        deleteButton.setOnAction(e -> clear());
-        deleteButton.setDisable(true);
-
-        volumeSlider = new Slider(0, 100, 100);
-        volumeSlider.setPrefWidth(100);
-        volumeSlider.setDisable(true);
-        volumeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
-            if (audioPlayer != null) {
-                audioPlayer.setVolume(newVal.floatValue() / 100.0f);
-            }
+            Platform.runLater(() -> exportButton.setDisable(false));
         });
-
-        Label volumeLabel = new Label("Vol:");
-        volumeLabel.setStyle("-fx-text-fill: #888;");
-
-        HBox volumeBox = new HBox(5, volumeLabel, volumeSlider);
-        volumeBox.setAlignment(Pos.CENTER_LEFT);
-
-        mainBox.getChildren().addAll(trackLabel, waveformBar, playButton, muteButton, volumeBox, deleteButton);
-        HBox.setHgrow(waveformBar, Priority.ALWAYS);
-
-        trackPane = mainBox;
-    }
-
-    private Button createTrackButton(String text) {
-        Button button = new Button(text);
-        button.setStyle(
-                "-fx-background-color: #4a4a4a;" +
-                        "-fx-text-fill: white;" +
-                        "-fx-font-size: 14px;" +
-                        "-fx-padding: 8;" +
-                        "-fx-background-radius: 5;" +
-                        "-fx-cursor: hand;"
-        );
-        button.setPrefWidth(45);
-        button.setOnMouseEntered(e -> button.setOpacity(0.8));
-        button.setOnMouseExited(e -> button.setOpacity(1.0));
-        return button;
-    }
-
-    public void setAudioData(byte[] data) {
-        this.audioData = data;
-        if (audioPlayer != null) {
-            audioPlayer.close();
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
+    /**
+     * Reads every track's meter once per frame. Tracks play on separate
+     * lines and are never summed in one buffer, so the master meter is an
+     * estimate: its peak is the loudest track's, and its level adds the
+     * tracks' energy as if they were uncorrelated.
+     */
+    private void refreshMeters(long now) {
+        float peak = 0;
+        double rmsEnergy = 0;
+        for (LoopTrack track : loopTracks) {
+            track.refreshMeter(now);
+            peak = Math.max(peak, track.getFramePeak());
+            rmsEnergy += (double) track.getFrameRms() * track.getFrameRms();
         }
-        audioPlayer = new AudioPlayer(data, AUDIO_FORMAT);
-
-        playButton.setDisable(false);
-        muteButton.setDisable(false);
-        volumeSlider.setDisable(false);
-        deleteButton.setDisable(false);
-
-        trackLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #4CAF50; -fx-min-width: 80;");
-        waveformBar.setProgress(1.0);
+        masterMeterView.update(peak, (float) Math.sqrt(rmsEnergy), now);
     }
 
-    private void togglePlay() {
-        if (audioPlayer == null) return;
-
-        if (audioPlayer.isPlaying()) {
-            audioPlayer.stop();
-            playButton.setText("▶️");
-            waveformBar.setStyle("-fx-accent: #4CAF50;");
-        } else {
-            audioPlayer.play();
-            playButton.setText("⏸️");
-            waveformBar.setStyle("-fx-accent: #2196F3;");
+    private void updateStatus(String message, boolean isError) {
+        Runnable update = () -> {
+            statusLabel.setText(message);
+            statusLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: " +
+                    (isError ? "#f44336" : "#4CAF50") + ";");
+        };
+        // Only the latest message matters; a burst of updates costs one runLater
+        if (pendingStatus.getAndSet(update) == null) {
+            Platform.runLater(() -> pendingStatus.getAndSet(null).run());
         }
     }
 
-    private void toggleMute() {
-        if (audioPlayer == null) return;
-
-        isMuted = !isMuted;
-        audioPlayer.setMuted(isMuted);
-        muteButton.setText(isMuted ? "🔇" : "🔊");
-    }
-
-    public void play() {
-        if (audioPlayer != null && !audioPlayer.isPlaying()) {
-            audioPlayer.play();
-            playButton.setText("⏸️");
-            waveformBar.setStyle("-fx-accent: #2196F3;");
+    private void cleanup() {
+        if (meterTimer != null) {
+            meterTimer.stop();
         }
-    }
-
-    public void stop() {
-        if (audioPlayer != null && audioPlayer.isPlaying()) {
-            audioPlayer.stop();
-            playButton.setText("▶️");
-            waveformBar.setStyle("-fx-accent: #4CAF50;");
+        if (audioRecorder != null) {
+            audioRecorder.stopRecording();
         }
-    }
-
-    public void clear() {
-        if (audioPlayer != null) {
-            audioPlayer.close();
-            audioPlayer = null;
+        for (LoopTrack track : loopTracks) {
+            track.stop();
         }
-        audioData = null;
-
-        playButton.setDisable(true);
-        muteButton.setDisable(true);
-        volumeSlider.setDisable(true);
-        deleteButton.setDisable(true);
-
-        playButton.setText("▶️");
-        muteButton.setText("🔊");
-        volumeSlider.setValue(100);
-        waveformBar.setProgress(0);
-
-        trackLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #888; -fx-min-width: 80;");
-        isMuted = false;
-    }
-
-    public boolean hasAudio() {
-        return audioData != null;
-    }
-
-    public int getTrackNumber() {
-        return trackNumber;
-    }
-
-    public Pane getTrackPane() {
-        return trackPane;
-    }
-
-    public byte[] getAudioData() {
-        return audioData;
-    }
-
-    public float getVolume() {
-        return (float) (volumeSlider.getValue() / 100.0);
-    }
-
-    public boolean isMuted() {
-        return isMuted;
-    }
-
-    public void setVolume(float volume) {
-        volumeSlider.setValue(volume * 100);
+        dbManager.close();
     }
 
-    public void setMuted(boolean muted) {
-        this.isMuted = muted;
-        if (audioPlayer != null) {
-            audioPlayer.setMuted(muted);
-        }
-        muteButton.setText(muted ? "🔇" : "🔊");
+    public static void main(String[] args) {
+        launch(args);
     }
-}
\ No newline at end of file
+}
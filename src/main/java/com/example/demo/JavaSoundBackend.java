@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.TargetDataLine;
+
+/** The default backend: the system's sound card through Java Sound data lines. */
+class JavaSoundBackend implements AudioBackend {
+
+    @Override
+    public String getName() {
+        return "Java Sound";
+    }
+
+    @Override
+    public boolean supportsInput(AudioFormat format) {
+        return AudioSystem.isLineSupported(new DataLine.Info(TargetDataLine.class, format));
+    }
+
+    @Override
+    public boolean supportsOutput(AudioFormat format) {
+        return AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, format));
+    }
+
+    @Override
+    public Input openInput(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+        TargetDataLine line = (TargetDataLine) AudioSystem.getLine(new DataLine.Info(TargetDataLine.class, format));
+        if (bufferBytes > 0) {
+            line.open(format, bufferBytes);
+        } else {
+            line.open(format);
+        }
+
+        return new Input() {
+            @Override
+            public AudioFormat getFormat() {
+                return line.getFormat();
+            }
+
+            @Override
+            public int getBufferSize() {
+                return line.getBufferSize();
+            }
+
+            @Override
+            public void start() {
+                line.start();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                return line.read(buffer, offset, length);
+            }
+
+            @Override
+            public void stop() {
+                line.stop();
+            }
+
+            @Override
+            public void close() {
+                line.close();
+            }
+        };
+    }
+
+    @Override
+    public Output openOutput(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+        SourceDataLine line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+        if (bufferBytes > 0) {
+            line.open(format, bufferBytes);
+        } else {
+            line.open(format);
+        }
+
+        return new Output() {
+            @Override
+            public AudioFormat getFormat() {
+                return line.getFormat();
+            }
+
+            @Override
+            public int getBufferSize() {
+                return line.getBufferSize();
+            }
+
+            @Override
+            public int available() {
+                return line.available();
+            }
+
+            @Override
+            public void start() {
+                line.start();
+            }
+
+            @Override
+            public int write(byte[] buffer, int offset, int length) {
+                return line.write(buffer, offset, length);
+            }
+
+            @Override
+            public void stop() {
+                line.stop();
+            }
+
+            @Override
+            public void close() {
+                line.close();
+            }
+        };
+    }
+}
@@ -2,8 +2,23 @@ package com.example.demo;
 
 import javafx.application.Application;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 public class Launcher {
-    public static void main(String[] args) {
-        Application.launch(HelloApplication.class, args);
+    public static void main(String[] args) throws IOException {
+        if (Arrays.asList(args).contains("--server")) {
+            RenderServer.main(args);
+            return;
+        }
+        if (Arrays.asList(args).contains("--maintain")) {
+            StoreMaintenance.main(args);
+            return;
+        }
+        if (Arrays.asList(args).contains("--audio-benchmark")) {
+            AudioPipelineBenchmark.main(args);
+            return;
+        }
+        Application.launch(DigitalLoopstation.class, args);
     }
 }
@@ -0,0 +1,58 @@
+package com.example.demo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free hand-off of level and playhead readings from an audio thread to
+ * the UI. The audio thread publishes after every block it writes; the UI
+ * reads once per frame, and the peak is the loudest sample seen since that
+ * previous read, so short transients are never lost between frames. A block
+ * lasts longer than a frame, so a frame with no new block repeats the last
+ * peak instead of dropping to zero.
+ *
+ * <p>Levels are linear amplitudes in 0..1. They are kept as float bits in
+ * atomic ints; for non-negative floats the bit patterns order the same way
+ * as the values, so a max can be accumulated on the raw ints. Those bit
+ * patterns are never negative, which leaves -1 to mark a peak the UI has
+ * already taken, so the peak and whether it is new change together.
+ */
+class LevelMeter {
+    private static final int TAKEN = -1;
+
+    private final AtomicInteger peakBits = new AtomicInteger(TAKEN);
+    private final AtomicInteger rmsBits = new AtomicInteger();
+    private final AtomicLong position = new AtomicLong();
+    private float heldPeak;
+
+    /** Audio thread: records one block's levels and where playback now is. */
+    public void publish(float peak, float rms, long positionBytes) {
+        int bits = Float.floatToRawIntBits(Math.max(0.0f, peak));
+        peakBits.accumulateAndGet(bits, Math::max);
+        rmsBits.set(Float.floatToRawIntBits(Math.max(0.0f, rms)));
+        position.set(positionBytes);
+    }
+
+    public void reset() {
+        peakBits.set(0);
+        rmsBits.set(0);
+        position.set(0);
+    }
+
+    /** UI thread: the highest peak since the last new block, or the previous one if none came. */
+    public float takePeak() {
+        int bits = peakBits.getAndSet(TAKEN);
+        if (bits != TAKEN) {
+            heldPeak = Float.intBitsToFloat(bits);
+        }
+        return heldPeak;
+    }
+
+    public float rms() {
+        return Float.intBitsToFloat(rmsBits.get());
+    }
+
+    public long position() {
+        return position.get();
+    }
+}
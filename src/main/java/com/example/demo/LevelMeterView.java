@@ -0,0 +1,67 @@
+package com.example.demo;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Horizontal peak/RMS bar with a falling peak-hold marker, drawn on a canvas
+ * so one frame costs the same no matter how often the audio updated.
+ */
+class LevelMeterView extends Canvas {
+    private static final double FLOOR_DB = -60.0;
+    private static final long HOLD_NANOS = 1_000_000_000L;
+    private static final double FALL_DB_PER_SECOND = 20.0;
+
+    private double holdDb = FLOOR_DB;
+    private long holdSince = 0;
+    private long lastFrame = 0;
+
+    public LevelMeterView(double width, double height) {
+        super(width, height);
+        draw(FLOOR_DB, FLOOR_DB);
+    }
+
+    /** Called once per frame with linear levels. */
+    public void update(float peak, float rms, long now) {
+        double peakDb = toDb(peak);
+        double rmsDb = toDb(rms);
+
+        if (peakDb >= holdDb) {
+            holdDb = peakDb;
+            holdSince = now;
+        } else if (now - holdSince > HOLD_NANOS && lastFrame != 0) {
+            holdDb = Math.max(peakDb, holdDb - FALL_DB_PER_SECOND * (now - lastFrame) / 1e9);
+        }
+        lastFrame = now;
+
+        draw(peakDb, rmsDb);
+    }
+
+    private void draw(double peakDb, double rmsDb) {
+        GraphicsContext g = getGraphicsContext2D();
+        double w = getWidth();
+        double h = getHeight();
+
+        g.setFill(Color.web("#1e1e1e"));
+        g.fillRect(0, 0, w, h);
+
+        g.setFill(Color.web("#2E7D32"));
+        g.fillRect(0, 0, w * scale(peakDb), h);
+        g.setFill(Color.web("#4CAF50"));
+        g.fillRect(0, 0, w * scale(rmsDb), h);
+
+        if (holdDb > FLOOR_DB) {
+            g.setFill(holdDb > -1.0 ? Color.web("#f44336") : Color.web("#FFC107"));
+            g.fillRect(Math.min(w - 2, w * scale(holdDb)), 0, 2, h);
+        }
+    }
+
+    private static double scale(double db) {
+        return Math.max(0.0, Math.min(1.0, (db - FLOOR_DB) / -FLOOR_DB));
+    }
+
+    private static double toDb(float linear) {
+        return linear > 0 ? Math.max(FLOOR_DB, 20 * Math.log10(linear)) : FLOOR_DB;
+    }
+}
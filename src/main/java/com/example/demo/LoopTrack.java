@@ -0,0 +1,377 @@
+package com.example.demo;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javax.sound.sampled.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+class LoopTrack {
+    private int trackNumber;
+    private StreamingAudio audio;
+    private TakeStack takes;
+    private CompletableFuture<TrackAnalysis> analysis;
+    private AudioPlayer audioPlayer;
+    private Pane trackPane;
+    private Consumer<LoopTrack> onOverdub;
+
+    private Button playButton;
+    private Button overdubButton;
+    private Button muteButton;
+    private Slider volumeSlider;
+    private Button deleteButton;
+    private ProgressBar waveformBar;
+    private LevelMeterView meterView;
+    private Label trackLabel;
+
+    private final LevelMeter levelMeter = new LevelMeter();
+    private float framePeak;
+    private float frameRms;
+
+    private boolean isMuted = false;
+    private double tempo = 1.0;
+    private boolean canOverdub = false;
+    private final AudioBackend audioBackend;
+    private static final AudioFormat AUDIO_FORMAT = new AudioFormat(44100.0f, 16, 1, true, false);
+
+    public LoopTrack(int trackNumber, AudioBackend audioBackend) {
+        this.trackNumber = trackNumber;
+        this.audioBackend = audioBackend;
+        createTrackPane();
+    }
+
+    private void createTrackPane() {
+        HBox mainBox = new HBox(15);
+        mainBox.setAlignment(Pos.CENTER_LEFT);
+        mainBox.setPadding(new Insets(15));
+        mainBox.setStyle("-fx-background-color: #3a3a3a; -fx-background-radius: 8;");
+
+        trackLabel = new Label("Track " + trackNumber);
+        trackLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #888; -fx-min-width: 80;");
+
+        waveformBar = new ProgressBar(0);
+        waveformBar.setPrefWidth(150);
+        waveformBar.setPrefHeight(30);
+        waveformBar.setStyle("-fx-accent: #4CAF50;");
+
+        meterView = new LevelMeterView(150, 8);
+        VBox displayBox = new VBox(4, waveformBar, meterView);
+        displayBox.setAlignment(Pos.CENTER_LEFT);
+        waveformBar.setMaxWidth(Double.MAX_VALUE);
+
+        playButton = createTrackButton("▶️");
+        playButton.setOnAction(e -> togglePlay());
+        playButton.setDisable(true);
+
+        muteButton = createTrackButton("🔊");
+        muteButton.setOnAction(e -> toggleMute());
+        muteButton.setDisable(true);
+
+        deleteButton = createTrackButton("🗑️");
+        deleteButton.setOnAction(e -> clear());
+        deleteButton.setDisable(true);
+
+        overdubButton = createTrackButton("⏺️");
+        overdubButton.setTooltip(new Tooltip("Overdub onto this track"));
+        overdubButton.setOnAction(e -> {
+            if (onOverdub != null) {
+                onOverdub.accept(this);
+            }
+        });
+        overdubButton.setDisable(true);
+
+        volumeSlider = new Slider(0, 100, 100);
+        volumeSlider.setPrefWidth(100);
+        volumeSlider.setDisable(true);
+        volumeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (audioPlayer != null) {
+                audioPlayer.setVolume(newVal.floatValue() / 100.0f);
+            }
+        });
+
+        Label volumeLabel = new Label("Vol:");
+        volumeLabel.setStyle("-fx-text-fill: #888;");
+
+        HBox volumeBox = new HBox(5, volumeLabel, volumeSlider);
+        volumeBox.setAlignment(Pos.CENTER_LEFT);
+
+        mainBox.getChildren().addAll(trackLabel, displayBox, playButton, overdubButton, muteButton, volumeBox, deleteButton);
+        HBox.setHgrow(displayBox, Priority.ALWAYS);
+
+        trackPane = mainBox;
+    }
+
+    private Button createTrackButton(String text) {
+        Button button = new Button(text);
+        button.setStyle(
+                "-fx-background-color: #4a4a4a;" +
+                        "-fx-text-fill: white;" +
+                        "-fx-font-size: 14px;" +
+                        "-fx-padding: 8;" +
+                        "-fx-background-radius: 5;" +
+                        "-fx-cursor: hand;"
+        );
+        button.setPrefWidth(45);
+        button.setOnMouseEntered(e -> button.setOpacity(0.8));
+        button.setOnMouseExited(e -> button.setOpacity(1.0));
+        return button;
+    }
+
+    public void setAudioData(byte[] data) {
+        setAudio(StreamingAudio.of(data), null);
+    }
+
+    /**
+     * @param newAudio      audio that may still be loading; playback starts
+     *                      with whatever has arrived
+     * @param knownAnalysis analysis already stored for exactly this audio, or
+     *                      {@code null} to compute it in the background
+     */
+    public void setAudio(StreamingAudio newAudio, TrackAnalysis knownAnalysis) {
+        this.audio = newAudio;
+        this.takes = null;
+        showAnalysis(knownAnalysis != null
+                ? CompletableFuture.completedFuture(knownAnalysis)
+                : newAudio.completion().thenCompose(data -> TrackAnalysis.analyzeAsync(data, AUDIO_FORMAT)));
+        if (audioPlayer != null) {
+            audioPlayer.close();
+        }
+        audioPlayer = new AudioPlayer(newAudio, AUDIO_FORMAT, audioBackend);
+        audioPlayer.setLevelMeter(levelMeter);
+        audioPlayer.setTempo(tempo);
+        newAudio.completion().exceptionally(e -> {
+            Platform.runLater(() -> {
+                if (audio == newAudio) {
+                    showLoadFailed(e);
+                }
+            });
+            return null;
+        });
+
+        playButton.setDisable(false);
+        overdubButton.setDisable(!canOverdub);
+        muteButton.setDisable(false);
+        volumeSlider.setDisable(false);
+        deleteButton.setDisable(false);
+
+        trackLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #4CAF50; -fx-min-width: 80;");
+        waveformBar.setProgress(1.0);
+    }
+
+    /** The track stays so it can be cleared, but can no longer be played or overdubbed. */
+    private void showLoadFailed(Throwable error) {
+        audioPlayer.stop();
+        playButton.setText("▶️");
+        playButton.setDisable(true);
+        overdubButton.setDisable(true);
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        trackLabel.setTooltip(new Tooltip("Loading failed: " + cause.getMessage()));
+        trackLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #f44336; -fx-min-width: 80;");
+        waveformBar.setStyle("-fx-accent: #f44336;");
+    }
+
+    private void showAnalysis(CompletableFuture<TrackAnalysis> newAnalysis) {
+        this.analysis = newAnalysis;
+        trackLabel.setTooltip(null);
+        newAnalysis.thenAccept(result -> Platform.runLater(() -> {
+            if (analysis == newAnalysis) {
+                trackLabel.setTooltip(new Tooltip(result.toString()));
+            }
+        }));
+    }
+
+    public void setOnOverdub(Consumer<LoopTrack> onOverdub) {
+        this.onOverdub = onOverdub;
+    }
+
+    /** Overdubbing needs an input device; without one the button stays disabled. */
+    public void setCanOverdub(boolean canOverdub) {
+        this.canOverdub = canOverdub;
+        overdubButton.setDisable(!canOverdub || audio == null);
+    }
+
+    /**
+     * Starts the loop playing if it is not already, so the overdub can be
+     * played along to.
+     *
+     * @return the loop position the overdub starts at, in bytes
+     */
+    public int beginOverdub() {
+        if (takes == null) {
+            takes = new TakeStack(audio, TakeStack.DEFAULT_MAX_TAKES);
+            audioPlayer.setTakes(takes);
+        }
+        if (!audioPlayer.isPlaying()) {
+            play();
+            return 0;
+        }
+        int frameSize = AUDIO_FORMAT.getFrameSize();
+        long position = levelMeter.position();
+        return (int) (position - position % frameSize) % audio.length();
+    }
+
+    public void addTake(byte[] pass, int phase) {
+        if (takes == null) return;
+
+        takes.addTake(pass, phase);
+        TakeStack current = takes;
+        showAnalysis(TrackAnalysis.analyzeAsync(current::flatten, AUDIO_FORMAT));
+        // Renders at the current tempo no longer match; make a new one
+        audioPlayer.setTempo(tempo);
+    }
+
+    public void setTempo(double tempo) {
+        this.tempo = tempo;
+        if (audioPlayer != null) {
+            audioPlayer.setTempo(tempo);
+        }
+    }
+
+    public int getTakeCount() {
+        return takes != null ? takes.getTakeCount() : 0;
+    }
+
+    public int getLoopLength() {
+        return audio.length();
+    }
+
+    private void togglePlay() {
+        if (audioPlayer == null) return;
+
+        if (audioPlayer.isPlaying()) {
+            audioPlayer.stop();
+            playButton.setText("▶️");
+            waveformBar.setStyle("-fx-accent: #4CAF50;");
+        } else {
+            audioPlayer.play();
+            playButton.setText("⏸️");
+            waveformBar.setStyle("-fx-accent: #2196F3;");
+        }
+    }
+
+    private void toggleMute() {
+        if (audioPlayer == null) return;
+
+        isMuted = !isMuted;
+        audioPlayer.setMuted(isMuted);
+        muteButton.setText(isMuted ? "🔇" : "🔊");
+    }
+
+    public void play() {
+        if (audioPlayer != null && !audioPlayer.isPlaying()) {
+            audioPlayer.play();
+            playButton.setText("⏸️");
+            waveformBar.setStyle("-fx-accent: #2196F3;");
+        }
+    }
+
+    public void stop() {
+        if (audioPlayer != null && audioPlayer.isPlaying()) {
+            audioPlayer.stop();
+            playButton.setText("▶️");
+            waveformBar.setStyle("-fx-accent: #4CAF50;");
+        }
+    }
+
+    public void clear() {
+        if (audioPlayer != null) {
+            audioPlayer.close();
+            audioPlayer = null;
+        }
+        audio = null;
+        takes = null;
+        analysis = null;
+        trackLabel.setTooltip(null);
+
+        playButton.setDisable(true);
+        overdubButton.setDisable(true);
+        muteButton.setDisable(true);
+        volumeSlider.setDisable(true);
+        deleteButton.setDisable(true);
+
+        playButton.setText("▶️");
+        muteButton.setText("🔊");
+        volumeSlider.setValue(100);
+        waveformBar.setProgress(0);
+
+        trackLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #888; -fx-min-width: 80;");
+        isMuted = false;
+    }
+
+    public boolean hasAudio() {
+        return audio != null;
+    }
+
+    public int getTrackNumber() {
+        return trackNumber;
+    }
+
+    public Pane getTrackPane() {
+        return trackPane;
+    }
+
+    /**
+     * Blocks until a track that is still loading has fully arrived. Overdubs
+     * are mixed in, so the result may be a new array on every call.
+     */
+    public byte[] getAudioData() {
+        if (takes != null) return takes.flatten();
+        return audio != null ? audio.awaitComplete() : null;
+    }
+
+    public CompletableFuture<TrackAnalysis> getAnalysis() {
+        return analysis;
+    }
+
+    /** @return the track as it is now, for saving off the FX thread; {@code null} if it is empty */
+    public TrackSnapshot snapshot() {
+        if (audio == null) return null;
+        CompletableFuture<byte[]> data = takes != null ? takes.flattenAsync() : audio.completion();
+        return new TrackSnapshot(trackNumber, data, getVolume(), isMuted, analysis);
+    }
+
+    /** Called once per frame by the UI's meter timer. */
+    public void refreshMeter(long now) {
+        framePeak = levelMeter.takePeak();
+        boolean playing = audioPlayer != null && audioPlayer.isPlaying();
+        frameRms = playing ? levelMeter.rms() : 0.0f;
+        meterView.update(framePeak, frameRms, now);
+
+        if (playing && audio.length() > 0) {
+            waveformBar.setProgress((double) levelMeter.position() / audio.length());
+        } else {
+            waveformBar.setProgress(audio != null ? 1.0 : 0.0);
+        }
+    }
+
+    public float getFramePeak() {
+        return framePeak;
+    }
+
+    public float getFrameRms() {
+        return frameRms;
+    }
+
+    public float getVolume() {
+        return (float) (volumeSlider.getValue() / 100.0);
+    }
+
+    public boolean isMuted() {
+        return isMuted;
+    }
+
+    public void setVolume(float volume) {
+        volumeSlider.setValue(volume * 100);
+    }
+
+    public void setMuted(boolean muted) {
+        this.isMuted = muted;
+        if (audioPlayer != null) {
+            audioPlayer.setMuted(muted);
+        }
+        muteButton.setText(muted ? "🔇" : "🔊");
+    }
+}
@@ -0,0 +1,464 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * A sound card simulated in memory, driven by a frame clock instead of
+ * hardware. Every {@link #advance(int)} feeds that many frames of a
+ * synthetic {@link Signal} to each started input and takes as many from
+ * each started output, capturing what was played and counting underruns
+ * and overruns.
+ *
+ * <p>Advancing only after {@link #awaitIdle(long)} makes a run exactly
+ * reproducible: every reader and writer has caught up before the clock
+ * moves. {@link #startRealtimeClock(int)} instead advances with the wall
+ * clock, as a sound card would, so underruns reflect real scheduling.
+ */
+class MemoryAudioBackend implements AudioBackend {
+
+    /** Synthetic input, as a function of the clock. */
+    interface Signal {
+        Signal SILENCE = (frame, channel) -> 0.0;
+
+        /** @return the sample at {@code frame}, from -1 to 1 */
+        double valueAt(long frame, int channel);
+
+        static Signal sine(double frequency, double amplitude, float sampleRate) {
+            return (frame, channel) -> amplitude * Math.sin(2 * Math.PI * frequency * frame / sampleRate);
+        }
+    }
+
+    private final float sampleRate;
+    private final Signal signal;
+    private final boolean captureOutput;
+    private final List<MemoryInput> inputs = new ArrayList<>();
+    private final List<MemoryOutput> outputs = new ArrayList<>();
+    private long frame = 0;
+    private volatile Thread clockThread;
+
+    /**
+     * @param captureOutput keep everything played, for inspection; leave off
+     *                      for long runs
+     */
+    public MemoryAudioBackend(float sampleRate, Signal signal, boolean captureOutput) {
+        this.sampleRate = sampleRate;
+        this.signal = signal;
+        this.captureOutput = captureOutput;
+    }
+
+    public MemoryAudioBackend(Signal signal, boolean captureOutput) {
+        this(44100.0f, signal, captureOutput);
+    }
+
+    @Override
+    public String getName() {
+        return "In-memory";
+    }
+
+    /** 16-bit signed PCM at the clock's sample rate, any channel count or byte order. */
+    @Override
+    public boolean supportsInput(AudioFormat format) {
+        return format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+                && format.getSampleSizeInBits() == 16
+                && format.getSampleRate() == sampleRate;
+    }
+
+    @Override
+    public boolean supportsOutput(AudioFormat format) {
+        return supportsInput(format);
+    }
+
+    @Override
+    public synchronized MemoryInput openInput(AudioFormat format, int bufferBytes) {
+        checkSupported(format);
+        MemoryInput input = new MemoryInput(format, bufferSize(format, bufferBytes));
+        inputs.add(input);
+        return input;
+    }
+
+    @Override
+    public synchronized MemoryOutput openOutput(AudioFormat format, int bufferBytes) {
+        checkSupported(format);
+        MemoryOutput output = new MemoryOutput(format, bufferSize(format, bufferBytes));
+        outputs.add(output);
+        return output;
+    }
+
+    private void checkSupported(AudioFormat format) {
+        if (!supportsInput(format)) {
+            throw new IllegalArgumentException("Unsupported format " + format + "; the clock runs at "
+                    + sampleRate + " Hz with 16-bit samples");
+        }
+    }
+
+    /** Whole frames; a tenth of a second unless asked otherwise. */
+    private static int bufferSize(AudioFormat format, int requested) {
+        int frameSize = format.getFrameSize();
+        int bytes = requested > 0 ? requested : (int) (format.getSampleRate() / 10) * frameSize;
+        return Math.max(frameSize, bytes - bytes % frameSize);
+    }
+
+    public synchronized long getFrame() {
+        return frame;
+    }
+
+    public synchronized List<MemoryOutput> getOutputs() {
+        return new ArrayList<>(outputs);
+    }
+
+    public synchronized List<MemoryInput> getInputs() {
+        return new ArrayList<>(inputs);
+    }
+
+    /** Moves the clock on by {@code frames}, playing and recording that much. */
+    public synchronized void advance(int frames) {
+        for (MemoryOutput output : outputs) {
+            output.consume(frames);
+        }
+        for (MemoryInput input : inputs) {
+            input.produce(frame, frames);
+        }
+        frame += frames;
+        notifyAll();
+    }
+
+    /**
+     * Waits until every started input has a reader waiting for data and
+     * every started output has a writer waiting for room.
+     *
+     * @return {@code false} if that did not happen within the timeout
+     */
+    public synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!isIdle()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            wait(remaining);
+        }
+        return true;
+    }
+
+    private boolean isIdle() {
+        for (MemoryInput input : inputs) {
+            if (input.started && !input.waiting) return false;
+        }
+        for (MemoryOutput output : outputs) {
+            if (output.started && !output.waiting) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Advances the clock by {@code frames}, {@code stepFrames} at a time,
+     * letting every stream catch up before each step.
+     *
+     * @throws IllegalStateException if a stream has not caught up within {@code timeoutMillis}
+     */
+    public void runLockstep(int frames, int stepFrames, long timeoutMillis) throws InterruptedException {
+        for (int done = 0; done < frames; done += stepFrames) {
+            if (!awaitIdle(timeoutMillis)) {
+                throw new IllegalStateException("Pipeline stalled at frame " + getFrame());
+            }
+            advance(Math.min(stepFrames, frames - done));
+        }
+        awaitIdle(timeoutMillis);
+    }
+
+    /**
+     * Runs a blocking call, such as stopping a recorder, on another thread
+     * while the clock keeps going, just as a sound card keeps draining while
+     * a line is stopped.
+     */
+    public <T> T runUntilDone(int stepFrames, Callable<T> action) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] failure = new Exception[1];
+        Thread thread = new Thread(() -> {
+            try {
+                result[0] = action.call();
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+        }, "memory-audio-call");
+        thread.start();
+        while (thread.isAlive()) {
+            awaitIdle(10);
+            advance(stepFrames);
+            thread.join(1);
+        }
+        if (failure[0] != null) throw failure[0];
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+
+    /** Advances the clock in real time, every {@code tickMillis}, until stopped. */
+    public void startRealtimeClock(int tickMillis) {
+        if (clockThread != null) return;
+
+        Thread thread = new Thread(() -> {
+            long started = System.nanoTime();
+            long advanced = 0;
+            while (clockThread == Thread.currentThread()) {
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long due = (long) ((System.nanoTime() - started) / 1e9 * sampleRate);
+                advance((int) (due - advanced));
+                advanced = due;
+            }
+        }, "memory-audio-clock");
+        thread.setDaemon(true);
+        clockThread = thread;
+        thread.start();
+    }
+
+    public void stopRealtimeClock() {
+        Thread thread = clockThread;
+        clockThread = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void encode(double value, AudioFormat format, byte[] dst, int offset) {
+        int sample = (int) Math.round(Math.max(-1.0, Math.min(1.0, value)) * 32767);
+        if (format.isBigEndian()) {
+            dst[offset] = (byte) (sample >> 8);
+            dst[offset + 1] = (byte) sample;
+        } else {
+            dst[offset] = (byte) sample;
+            dst[offset + 1] = (byte) (sample >> 8);
+        }
+    }
+
+    /** Ring buffer shared by both directions; guarded by the backend's monitor. */
+    private abstract class Stream {
+        final AudioFormat format;
+        final byte[] ring;
+        int head = 0;
+        int count = 0;
+        boolean started = false;
+        boolean closed = false;
+        // A reader or writer is blocked until the clock moves
+        boolean waiting = false;
+
+        Stream(AudioFormat format, int bufferSize) {
+            this.format = format;
+            this.ring = new byte[bufferSize];
+        }
+
+        public AudioFormat getFormat() {
+            return format;
+        }
+
+        public int getBufferSize() {
+            return ring.length;
+        }
+
+        public void start() {
+            synchronized (MemoryAudioBackend.this) {
+                started = true;
+                waiting = false;
+                MemoryAudioBackend.this.notifyAll();
+            }
+        }
+
+        public void stop() {
+            synchronized (MemoryAudioBackend.this) {
+                started = false;
+                waiting = false;
+                MemoryAudioBackend.this.notifyAll();
+            }
+        }
+
+        void put(byte[] src, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                ring[(head + count + i) % ring.length] = src[offset + i];
+            }
+            count += length;
+        }
+
+        void take(byte[] dst, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                dst[offset + i] = ring[(head + i) % ring.length];
+            }
+            head = (head + length) % ring.length;
+            count -= length;
+        }
+    }
+
+    class MemoryInput extends Stream implements Input {
+        private long overrunFrames = 0;
+
+        MemoryInput(AudioFormat format, int bufferSize) {
+            super(format, bufferSize);
+        }
+
+        void produce(long fromFrame, int frames) {
+            if (!started || closed) return;
+            // Busy again until the woken reader or writer blocks once more
+            waiting = false;
+
+            int frameSize = format.getFrameSize();
+            byte[] bytes = new byte[frameSize];
+            for (int f = 0; f < frames; f++) {
+                if (count + frameSize > ring.length) {
+                    overrunFrames += frames - f;
+                    return;
+                }
+                for (int c = 0; c < format.getChannels(); c++) {
+                    encode(signal.valueAt(fromFrame + f, c), format, bytes, c * 2);
+                }
+                put(bytes, 0, frameSize);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            synchronized (MemoryAudioBackend.this) {
+                int read = 0;
+                while (read < length) {
+                    if (count == 0) {
+                        if (!started || closed) break;
+                        // Only a change of state is announced; otherwise every waiter wakes every other
+                        if (!waiting) {
+                            waiting = true;
+                            MemoryAudioBackend.this.notifyAll();
+                        }
+                        try {
+                            MemoryAudioBackend.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        continue;
+                    }
+                    int n = Math.min(count, length - read);
+                    take(buffer, offset + read, n);
+                    read += n;
+                }
+                return read;
+            }
+        }
+
+        /** @return frames of input dropped because the reader fell behind */
+        public long getOverrunFrames() {
+            synchronized (MemoryAudioBackend.this) {
+                return overrunFrames;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (MemoryAudioBackend.this) {
+                closed = true;
+                started = false;
+                inputs.remove(this);
+                MemoryAudioBackend.this.notifyAll();
+            }
+        }
+    }
+
+    class MemoryOutput extends Stream implements Output {
+        private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        private long framesPlayed = 0;
+        private long underrunFrames = 0;
+
+        MemoryOutput(AudioFormat format, int bufferSize) {
+            super(format, bufferSize);
+        }
+
+        /** Plays {@code frames}; frames missing from the buffer are underruns and play as silence. */
+        void consume(int frames) {
+            if (!started || closed) return;
+            waiting = false;
+
+            int frameSize = format.getFrameSize();
+            int wanted = frames * frameSize;
+            int available = Math.min(count, wanted);
+            byte[] played = new byte[wanted];
+            take(played, 0, available - available % frameSize);
+
+            underrunFrames += (wanted - available) / frameSize;
+            framesPlayed += frames;
+            if (captureOutput) {
+                captured.write(played, 0, wanted);
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (MemoryAudioBackend.this) {
+                return ring.length - count;
+            }
+        }
+
+        @Override
+        public int write(byte[] buffer, int offset, int length) {
+            synchronized (MemoryAudioBackend.this) {
+                int written = 0;
+                while (written < length && !closed) {
+                    int room = ring.length - count;
+                    if (room == 0) {
+                        if (!started) break;
+                        if (!waiting) {
+                            waiting = true;
+                            MemoryAudioBackend.this.notifyAll();
+                        }
+                        try {
+                            MemoryAudioBackend.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        continue;
+                    }
+                    int n = Math.min(room, length - written);
+                    put(buffer, offset + written, n);
+                    written += n;
+                }
+                return written;
+            }
+        }
+
+        /** @return everything played since the stream opened, underruns as silence */
+        public byte[] getCaptured() {
+            synchronized (MemoryAudioBackend.this) {
+                return captured.toByteArray();
+            }
+        }
+
+        public long getFramesPlayed() {
+            synchronized (MemoryAudioBackend.this) {
+                return framesPlayed;
+            }
+        }
+
+        public long getUnderrunFrames() {
+            synchronized (MemoryAudioBackend.this) {
+                return underrunFrames;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (MemoryAudioBackend.this) {
+                closed = true;
+                started = false;
+                outputs.remove(this);
+                MemoryAudioBackend.this.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sums a set of 16-bit PCM tracks into a single stream, the same way Play All
+ * sounds: every track loops on its own length and the mix runs for as long as
+ * the longest track. Samples are rendered on demand into a caller-supplied
+ * buffer, so a mixdown never has to exist in memory as a whole.
+ */
+class Mixdown {
+    private final AudioFormat format;
+    private final List<byte[]> sources = new ArrayList<>();
+    private final List<Integer> usableLengths = new ArrayList<>();
+    private final List<Float> gains = new ArrayList<>();
+    private long lengthBytes = 0;
+    private float[] mixBuffer = new float[0];
+
+    public Mixdown(AudioFormat format) {
+        if (format.getSampleSizeInBits() != 16 || format.isBigEndian()) {
+            throw new IllegalArgumentException("Mixdown needs 16-bit little-endian PCM, got " + format);
+        }
+        this.format = format;
+    }
+
+    public void addTrack(byte[] audioData, float volume, boolean muted) {
+        int usable = audioData.length - (audioData.length % format.getFrameSize());
+        if (usable <= 0) return;
+
+        sources.add(audioData);
+        usableLengths.add(usable);
+        gains.add(muted ? 0.0f : volume);
+        lengthBytes = Math.max(lengthBytes, usable);
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public long getLengthBytes() {
+        return lengthBytes;
+    }
+
+    public boolean isEmpty() {
+        return sources.isEmpty();
+    }
+
+    /**
+     * Renders mixed samples starting at {@code position} (in bytes) until
+     * {@code dst} is full or the mix ends. Samples are written with
+     * {@code dst}'s byte order, so a big-endian buffer yields big-endian PCM.
+     *
+     * @return the number of bytes written
+     */
+    public int render(long position, ByteBuffer dst) {
+        int count = (int) Math.min(dst.remaining() & ~1, lengthBytes - position);
+        if (count <= 0) return 0;
+
+        int samples = count / 2;
+        if (mixBuffer.length < samples) {
+            mixBuffer = new float[samples];
+        }
+        Arrays.fill(mixBuffer, 0, samples, 0.0f);
+
+        for (int t = 0; t < sources.size(); t++) {
+            float gain = gains.get(t);
+            if (gain <= 0) continue;
+            byte[] data = sources.get(t);
+            int usable = usableLengths.get(t);
+            int idx = (int) (position % usable);
+            for (int s = 0; s < samples; s++) {
+                mixBuffer[s] += (short) ((data[idx + 1] << 8) | (data[idx] & 0xFF)) * gain;
+                idx += 2;
+                if (idx >= usable) idx = 0;
+            }
+        }
+
+        for (int s = 0; s < samples; s++) {
+            dst.putShort((short) Math.max(-32768, Math.min(32767, mixBuffer[s])));
+        }
+        return count;
+    }
+}
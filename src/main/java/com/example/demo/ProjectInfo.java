@@ -0,0 +1,72 @@
+package com.example.demo;
+
+import java.sql.*;
+
+class ProjectInfo {
+    private int id;
+    private String name;
+    private Timestamp createdAt;
+    private Timestamp lastModified;
+    private int trackCount;
+    private int silentTracks;
+    private long durationMillis = -1;
+    private float loudnessLufs = TrackAnalysis.FLOOR_DB;
+
+    public ProjectInfo(int id, String name, Timestamp createdAt, Timestamp lastModified) {
+        this.id = id;
+        this.name = name;
+        this.createdAt = createdAt;
+        this.lastModified = lastModified;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Timestamp getLastModified() {
+        return lastModified;
+    }
+
+    public void setTrackSummary(int trackCount, int silentTracks, long durationMillis, float loudnessLufs) {
+        this.trackCount = trackCount;
+        this.silentTracks = silentTracks;
+        this.durationMillis = durationMillis;
+        this.loudnessLufs = loudnessLufs;
+    }
+
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    public int getSilentTracks() {
+        return silentTracks;
+    }
+
+    /** @return the longest track's duration, or -1 if no track has been analyzed */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public float getLoudnessLufs() {
+        return loudnessLufs;
+    }
+
+    @Override
+    public String toString() {
+        if (durationMillis < 0) {
+            return name + " (Modified: " + lastModified + ")";
+        }
+        String summary = trackCount + " tracks, " + TrackAnalysis.formatDuration(durationMillis);
+        if (silentTracks > 0) {
+            summary += ", " + silentTracks + " silent";
+        }
+        if (loudnessLufs > TrackAnalysis.FLOOR_DB) {
+            summary += String.format(", %.1f LUFS", loudnessLufs);
+        }
+        return name + " (" + summary + ", Modified: " + lastModified + ")";
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.demo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Headless preview renderer. Serves {@code GET /projects/{id}/mix.wav} (or
+ * {@code mix.aiff}) on the loopback interface, rendering the stored project
+ * with the same mix as Play All. Every request runs on its own virtual
+ * thread; the CPU-heavy mixing is capped at one render per core. A render
+ * is streamed to the client as it is mixed, and those small enough are kept
+ * in an LRU cache keyed by project id and last-modified time, so an edited
+ * project is re-rendered and an unchanged one is not.
+ *
+ * <p>Start with {@code --server [--port=8085]}. Database settings come from
+ * the {@code loopstation.db.*} system properties, and no audio device is
+ * ever opened.
+ */
+class RenderServer {
+    private static final AudioFormat AUDIO_FORMAT = new AudioFormat(44100.0f, 16, 1, true, false);
+    private static final int DEFAULT_PORT = 8085;
+    private static final String PREFIX = "/projects/";
+
+    private final DatabaseManager dbManager;
+    private final ReentrantLock dbLock = new ReentrantLock();
+    private final Semaphore mixPermits;
+    private final RenderCache cache;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public RenderServer(DatabaseManager dbManager, int maxConcurrentMixes, long cacheBytes) {
+        this.dbManager = dbManager;
+        this.mixPermits = new Semaphore(maxConcurrentMixes);
+        this.cache = new RenderCache(cacheBytes);
+    }
+
+    public void start(int port) throws IOException {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PREFIX, this::handle);
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("Render server listening on http://localhost:" + getPort() + PREFIX + "{id}/mix.wav");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean responded = false;
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Only GET is supported");
+                return;
+            }
+
+            // /projects/{id}/mix.wav
+            URI uri = exchange.getRequestURI();
+            String[] parts = uri.getPath().substring(PREFIX.length()).split("/");
+            if (parts.length != 2 || !parts[1].matches("mix\\.(wav|aif|aiff)")) {
+                sendError(exchange, 404, "Expected " + PREFIX + "{id}/mix.wav or mix.aiff");
+                return;
+            }
+
+            int projectId;
+            try {
+                projectId = Integer.parseInt(parts[0]);
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "Invalid project id: " + parts[0]);
+                return;
+            }
+            AudioFileFormat.Type type = parts[1].equals("mix.wav")
+                    ? AudioFileFormat.Type.WAVE
+                    : AudioFileFormat.Type.AIFF;
+
+            Timestamp lastModified;
+            dbLock.lock();
+            try {
+                lastModified = dbManager.getLastModified(projectId);
+            } finally {
+                dbLock.unlock();
+            }
+            if (lastModified == null) {
+                sendError(exchange, 404, "No project with id " + projectId);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type",
+                    type == AudioFileFormat.Type.WAVE ? "audio/wav" : "audio/aiff");
+            String key = projectId + "@" + lastModified.getTime() + "." + type.getExtension();
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                responded = true;
+                exchange.sendResponseHeaders(200, cached.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(cached);
+                }
+                return;
+            }
+
+            Mixdown mixdown = loadMixdown(projectId);
+            long size = AudioFileIO.fileLength(type, mixdown.getLengthBytes());
+            if (mixdown.getLengthBytes() > AudioFileIO.MAX_DATA_SIZE) {
+                throw new IOException("Mix of project " + projectId + " is too long to serve");
+            }
+
+            // Stream straight to the client; keep a copy only if the cache can hold it
+            ByteArrayOutputStream copy = cache.fits(size) ? new ByteArrayOutputStream((int) size) : null;
+            mixPermits.acquire();
+            MixingChannel channel = null;
+            try {
+                responded = true;
+                exchange.sendResponseHeaders(200, size);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    OutputStream target = copy == null ? out : new TeeOutputStream(out, copy);
+                    channel = new MixingChannel(Channels.newChannel(target));
+                    AudioFileIO.writeMixdown(mixdown, type, channel);
+                }
+            } finally {
+                if (channel == null || channel.holding) {
+                    mixPermits.release();
+                }
+            }
+            if (copy != null) {
+                cache.put(key, copy.toByteArray());
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            System.err.println("Render failed: " + e.getMessage());
+            e.printStackTrace();
+            // Once the headers are out all that is left is to cut the response short
+            if (!responded) {
+                sendError(exchange, 500, e instanceof SQLException ? "Database error" : "Render failed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!responded) {
+                sendError(exchange, 503, "Interrupted");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Only the track query holds the lock; the audio arrives on loader
+     * threads with their own connections, so waiting for a large project
+     * does not hold up other requests. Legacy rows are read as they are
+     * rather than migrated, so a preview never writes to the database.
+     */
+    private Mixdown loadMixdown(int projectId) throws SQLException {
+        List<StoredTrack> tracks;
+        dbLock.lock();
+        try {
+            tracks = dbManager.loadTracks(projectId, false);
+        } finally {
+            dbLock.unlock();
+        }
+
+        Mixdown mixdown = new Mixdown(AUDIO_FORMAT);
+        for (StoredTrack track : tracks) {
+            mixdown.addTrack(track.getAudioData(), track.getVolume(), track.isMuted());
+        }
+        return mixdown;
+    }
+
+    /** @return how many requests were answered from the render cache */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** Least-recently-used renders, bounded by their total size in bytes. */
+    private static class RenderCache {
+        private final long maxBytes;
+        private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final ReentrantLock lock = new ReentrantLock();
+        private long usedBytes = 0;
+        private long hits = 0;
+
+        RenderCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        boolean fits(long size) {
+            return size <= maxBytes && size <= Integer.MAX_VALUE - 8;
+        }
+
+        byte[] get(String key) {
+            lock.lock();
+            try {
+                byte[] value = entries.get(key);
+                if (value != null) {
+                    hits++;
+                }
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long getHits() {
+            lock.lock();
+            try {
+                return hits;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String key, byte[] value) {
+            if (!fits(value.length)) return;
+
+            lock.lock();
+            try {
+                byte[] previous = entries.put(key, value);
+                if (previous != null) {
+                    usedBytes -= previous.length;
+                }
+                usedBytes += value.length;
+
+                var it = entries.entrySet().iterator();
+                while (usedBytes > maxBytes && it.hasNext()) {
+                    Map.Entry<String, byte[]> eldest = it.next();
+                    usedBytes -= eldest.getValue().length;
+                    it.remove();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Holds a mixing permit while the next block is rendered and gives it up
+     * while the block is written, so a slow client does not keep a mixer
+     * from other requests.
+     */
+    private class MixingChannel implements WritableByteChannel {
+        private final WritableByteChannel out;
+        private boolean holding = true;
+
+        MixingChannel(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            mixPermits.release();
+            holding = false;
+            int written = out.write(src);
+            try {
+                mixPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to mix");
+            }
+            holding = true;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return out.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Writes everything to the client and to a second stream as well. */
+    private static class TeeOutputStream extends FilterOutputStream {
+        private final OutputStream copy;
+
+        TeeOutputStream(OutputStream out, OutputStream copy) {
+            super(out);
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            }
+        }
+
+        DatabaseManager dbManager = new DatabaseManager();
+        if (!dbManager.connect()) {
+            System.exit(1);
+        }
+
+        int mixers = Integer.getInteger("loopstation.render.threads", Runtime.getRuntime().availableProcessors());
+        long cacheBytes = Long.getLong("loopstation.render.cacheBytes", 256L * 1024 * 1024);
+
+        RenderServer renderServer = new RenderServer(dbManager, mixers, cacheBytes);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            renderServer.stop();
+            dbManager.close();
+        }));
+        renderServer.start(port);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Records how long the application takes to put its first frame on screen
+ * and to finish background initialization, measured from JVM start.
+ *
+ * <p>With {@code -Dloopstation.startup.benchmark=true} the app exits as soon
+ * as it is ready, appends a row to the CSV named by
+ * {@code loopstation.startup.output} (default {@code target/startup-benchmark.csv})
+ * and exits with status 1 if {@code loopstation.startup.maxFirstFrameMs} or
+ * {@code loopstation.startup.maxReadyMs} is exceeded.
+ */
+final class StartupMetrics {
+    static final boolean BENCHMARK = Boolean.getBoolean("loopstation.startup.benchmark");
+
+    private static final long JVM_START_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElse(System.currentTimeMillis());
+
+    private static final String SHARED_ARCHIVE_MODE = detectSharedArchiveMode();
+
+    private static volatile long firstFrameMillis = -1;
+    private static volatile long readyMillis = -1;
+
+    private StartupMetrics() {
+    }
+
+    static long sinceJvmStart() {
+        return System.currentTimeMillis() - JVM_START_MILLIS;
+    }
+
+    static void markFirstFrame() {
+        if (firstFrameMillis < 0) {
+            firstFrameMillis = sinceJvmStart();
+            System.out.println("Startup: first frame after " + firstFrameMillis + " ms");
+        }
+    }
+
+    /**
+     * @return the exit status the benchmark should finish with, or -1 when
+     * not running as a benchmark
+     */
+    static synchronized int markReady(long databaseMillis, long audioMillis) {
+        if (readyMillis >= 0) return -1;
+        readyMillis = sinceJvmStart();
+        System.out.println("Startup: ready after " + readyMillis + " ms (database " + databaseMillis
+                + " ms, audio " + audioMillis + " ms)");
+
+        if (!BENCHMARK) return -1;
+
+        writeReport(databaseMillis, audioMillis);
+        boolean regressed = exceeds("loopstation.startup.maxFirstFrameMs", firstFrameMillis)
+                | exceeds("loopstation.startup.maxReadyMs", readyMillis);
+        return regressed ? 1 : 0;
+    }
+
+    private static boolean exceeds(String property, long measured) {
+        long limit = Long.getLong(property, -1);
+        if (limit >= 0 && measured > limit) {
+            System.err.println("Startup regression: " + measured + " ms exceeds " + property + "=" + limit);
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeReport(long databaseMillis, long audioMillis) {
+        Path output = Path.of(System.getProperty("loopstation.startup.output", "target/startup-benchmark.csv"));
+        try {
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            if (Files.notExists(output)) {
+                Files.writeString(output, "timestamp,first_frame_ms,ready_ms,database_ms,audio_ms,cds\n",
+                        StandardCharsets.UTF_8);
+            }
+            String row = Instant.now() + "," + firstFrameMillis + "," + readyMillis + ","
+                    + databaseMillis + "," + audioMillis + "," + sharedArchiveMode() + "\n";
+            Files.writeString(output, row, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Could not write startup report to " + output);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * How this run used an AppCDS archive: {@code off} without
+     * {@code -XX:SharedArchiveFile}, {@code dump} when there was no archive
+     * yet, so the JVM writes one as it exits, and {@code map} when an archive
+     * from an earlier run was there to map at startup. Taken when this class
+     * loads, early in startup and long before any archive is written.
+     */
+    static String sharedArchiveMode() {
+        return SHARED_ARCHIVE_MODE;
+    }
+
+    private static String detectSharedArchiveMode() {
+        String[] args = ProcessHandle.current().info().arguments().orElse(null);
+        if (args == null) return "unknown";
+
+        String archive = null;
+        for (String arg : args) {
+            if (arg.startsWith("-XX:SharedArchiveFile=")) {
+                archive = arg.substring("-XX:SharedArchiveFile=".length());
+            }
+        }
+        if (archive == null) return "off";
+
+        try {
+            return Files.exists(Path.of(archive)) ? "map" : "dump";
+        } catch (RuntimeException e) {
+            return "unknown";
+        }
+    }
+}
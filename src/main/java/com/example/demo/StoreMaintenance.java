@@ -0,0 +1,328 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Headless integrity scan of the project store, started with
+ * {@code --maintain}. Projects are checked in parallel on a fixed worker
+ * pool; each worker has its own connection and holds at most a few chunks of
+ * one track at a time, so memory stays flat however large the database is.
+ *
+ * <p>For every track it checks that the chunks are complete and the length
+ * is a whole number of frames, and verifies or backfills the CRC-32. Empty
+ * projects and tracks or chunks whose owner is gone are reported, and
+ * deleted with {@code --repair}. Progress is checkpointed to a file, so an
+ * interrupted run resumes where it stopped; {@code --restart} ignores it.
+ * Run it while the application is closed, since a project being saved looks
+ * empty for a moment.
+ *
+ * <pre>--maintain [--repair] [--threads=N] [--checkpoint=path] [--restart]</pre>
+ */
+class StoreMaintenance {
+    private static final AudioFormat AUDIO_FORMAT = new AudioFormat(44100.0f, 16, 1, true, false);
+    private static final int PAGE_SIZE = 200;
+    private static final int CHUNKS_PER_READ = 4;
+    private static final int CHECKPOINT_EVERY = 50;
+
+    private final boolean repair;
+    private final int threads;
+    private final Path checkpointFile;
+
+    private final ThreadLocal<DatabaseManager> workerConnection = new ThreadLocal<>();
+    private final Queue<DatabaseManager> openConnections = new ConcurrentLinkedQueue<>();
+    private final ConcurrentSkipListSet<Integer> inFlight = new ConcurrentSkipListSet<>();
+    // Projects that could not be checked; the checkpoint never moves past them
+    private final ConcurrentSkipListSet<Integer> failed = new ConcurrentSkipListSet<>();
+
+    private final AtomicInteger projectsChecked = new AtomicInteger();
+    private final AtomicInteger tracksChecked = new AtomicInteger();
+    private final AtomicInteger checksumsStored = new AtomicInteger();
+    private final AtomicInteger issues = new AtomicInteger();
+    private final AtomicInteger repairs = new AtomicInteger();
+    private volatile int lastSubmitted;
+
+    public StoreMaintenance(boolean repair, int threads, Path checkpointFile) {
+        this.repair = repair;
+        this.threads = threads;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /** @return 0 if the store is clean, 2 if problems were found, 1 on failure */
+    public int run(boolean restart) throws SQLException, IOException, InterruptedException {
+        DatabaseManager main = connection();
+        int resumeAfter = restart ? 0 : readCheckpoint();
+        if (resumeAfter > 0) {
+            System.out.println("Resuming after project " + resumeAfter);
+        }
+        lastSubmitted = resumeAfter;
+
+        // A short queue and caller-runs keep the scan from racing ahead of the workers
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), runnable -> {
+            Thread thread = new Thread(runnable, "maintenance-worker");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            int after = resumeAfter;
+            int submitted = 0;
+            List<Integer> page;
+            while (!(page = main.getProjectIdsAfter(after, PAGE_SIZE)).isEmpty()) {
+                for (int projectId : page) {
+                    inFlight.add(projectId);
+                    lastSubmitted = projectId;
+                    pool.execute(() -> checkProject(projectId));
+                    // Only this thread counts, so checkpoints come at a steady pace
+                    if (++submitted % CHECKPOINT_EVERY == 0) {
+                        writeCheckpoint();
+                    }
+                }
+                after = page.get(page.size() - 1);
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+
+        checkOrphans(main);
+        if (failed.isEmpty()) {
+            Files.deleteIfExists(checkpointFile);
+        } else {
+            // The next run starts again from the first project that could not be checked
+            writeCheckpoint();
+            System.out.println(failed.size() + " projects could not be checked, from project " + failed.first());
+        }
+
+        System.out.println("Checked " + projectsChecked + " projects and " + tracksChecked + " tracks; "
+                + checksumsStored + " checksums stored, " + issues + " problems found, " + repairs + " repaired");
+        return issues.get() > repairs.get() ? 2 : 0;
+    }
+
+    private void checkProject(int projectId) {
+        try {
+            DatabaseManager db = connection();
+            List<TrackLayout> layouts = db.getTrackLayouts(projectId);
+
+            if (layouts.isEmpty()) {
+                report("project " + projectId + " has no tracks");
+                if (repair) {
+                    db.deleteProject(projectId);
+                    repaired("deleted empty project " + projectId);
+                }
+            }
+            for (TrackLayout layout : layouts) {
+                checkTrack(db, layout);
+            }
+            projectsChecked.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            // A corrupt row can fail in any way; either way the project was not checked
+            failed.add(projectId);
+            report("project " + projectId + " could not be checked: " + e);
+        } finally {
+            inFlight.remove(projectId);
+        }
+    }
+
+    void checkTrack(DatabaseManager db, TrackLayout layout) throws SQLException {
+        String track = "project " + layout.getProjectId() + " track " + layout.getTrackNumber();
+        CRC32 crc = new CRC32();
+        long length = 0;
+        boolean intact = true;
+
+        if (layout.getChunkCount() >= 0) {
+            int chunkCount = layout.getChunkCount();
+            for (int seq = 0; seq < chunkCount && intact; seq += CHUNKS_PER_READ) {
+                int lastSeq = Math.min(chunkCount, seq + CHUNKS_PER_READ) - 1;
+                List<byte[]> chunks;
+                try {
+                    chunks = db.readChunks(layout.getProjectId(), layout.getTrackNumber(), seq, lastSeq);
+                } catch (SQLException e) {
+                    report(track + ": " + e.getMessage());
+                    intact = false;
+                    break;
+                }
+                for (int i = 0; i < chunks.size(); i++) {
+                    byte[] chunk = chunks.get(i);
+                    boolean lastChunk = seq + i == chunkCount - 1;
+                    if (!lastChunk && chunk.length != DatabaseManager.CHUNK_SIZE) {
+                        report(track + ": chunk " + (seq + i) + " holds " + chunk.length + " bytes");
+                        intact = false;
+                    }
+                    crc.update(chunk);
+                    length += chunk.length;
+                }
+                if (chunks.size() < lastSeq - seq + 1) {
+                    report(track + ": only " + (seq + chunks.size()) + " of " + chunkCount + " chunks present");
+                    intact = false;
+                }
+            }
+            if (intact && length != layout.getAudioLength()) {
+                report(track + ": " + length + " bytes stored but " + layout.getAudioLength() + " recorded");
+                intact = false;
+            }
+        } else if (layout.isMonolithic()) {
+            byte[] audioData = db.readMonolithicAudio(layout.getProjectId(), layout.getTrackNumber());
+            crc.update(audioData);
+            length = audioData.length;
+        } else {
+            report(track + ": has no audio");
+            intact = false;
+        }
+
+        if (intact && length == 0) {
+            report(track + ": audio is empty");
+            intact = false;
+        }
+        if (intact && length % AUDIO_FORMAT.getFrameSize() != 0) {
+            report(track + ": " + length + " bytes is not a whole number of "
+                    + AUDIO_FORMAT.getFrameSize() + "-byte frames");
+            intact = false;
+        }
+
+        if (intact) {
+            if (layout.getChecksum() < 0) {
+                db.updateChecksum(layout.getProjectId(), layout.getTrackNumber(), crc.getValue());
+                checksumsStored.incrementAndGet();
+            } else if (layout.getChecksum() != crc.getValue()) {
+                report(track + ": checksum mismatch (stored " + Long.toHexString(layout.getChecksum())
+                        + ", computed " + Long.toHexString(crc.getValue()) + ")");
+            }
+        }
+        tracksChecked.incrementAndGet();
+    }
+
+    private void checkOrphans(DatabaseManager db) throws SQLException {
+        for (int[] orphan : db.findOrphanTracks()) {
+            report("track " + orphan[1] + " belongs to missing project " + orphan[0]);
+            if (repair) {
+                db.deleteTrack(orphan[0], orphan[1]);
+                repaired("deleted orphaned track " + orphan[1] + " of project " + orphan[0]);
+            }
+        }
+        for (int[] orphan : db.findOrphanChunks()) {
+            report("chunks of track " + orphan[1] + " in project " + orphan[0] + " have no track row");
+            if (repair) {
+                db.deleteTrack(orphan[0], orphan[1]);
+                repaired("deleted orphaned chunks of track " + orphan[1] + " in project " + orphan[0]);
+            }
+        }
+    }
+
+    private synchronized void report(String problem) {
+        issues.incrementAndGet();
+        System.out.println("[problem] " + problem);
+    }
+
+    private synchronized void repaired(String action) {
+        repairs.incrementAndGet();
+        System.out.println("[repaired] " + action);
+    }
+
+    private DatabaseManager connection() throws SQLException {
+        DatabaseManager db = workerConnection.get();
+        if (db == null) {
+            db = new DatabaseManager();
+            if (!db.connect()) {
+                throw new SQLException("Could not connect to the database");
+            }
+            workerConnection.set(db);
+            openConnections.add(db);
+        }
+        return db;
+    }
+
+    private void closeConnections() {
+        DatabaseManager db;
+        while ((db = openConnections.poll()) != null) {
+            db.close();
+        }
+    }
+
+    // ---- checkpoint ----
+
+    private int readCheckpoint() throws IOException {
+        if (Files.notExists(checkpointFile)) return 0;
+        String content = Files.readString(checkpointFile, StandardCharsets.UTF_8).trim();
+        try {
+            return Integer.parseInt(content);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring unreadable checkpoint " + checkpointFile + ": " + content);
+            return 0;
+        }
+    }
+
+    /** Records the highest project id below which every project has been checked. */
+    private synchronized void writeCheckpoint() {
+        int done = lastSubmitted;
+        // In flight first: a failed project joins the failed set before it leaves that one
+        Integer oldestInFlight = inFlight.ceiling(Integer.MIN_VALUE);
+        Integer oldestFailed = failed.ceiling(Integer.MIN_VALUE);
+        if (oldestInFlight != null) {
+            done = Math.min(done, oldestInFlight - 1);
+        }
+        if (oldestFailed != null) {
+            done = Math.min(done, oldestFailed - 1);
+        }
+
+        try {
+            Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.writeString(temp, Integer.toString(done), StandardCharsets.UTF_8);
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean repair = false;
+        boolean restart = false;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        Path checkpoint = Path.of("loopstation-maintenance.checkpoint");
+
+        for (String arg : args) {
+            if (arg.equals("--repair")) {
+                repair = true;
+            } else if (arg.equals("--restart")) {
+                restart = true;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--checkpoint=")) {
+                checkpoint = Path.of(arg.substring("--checkpoint=".length()));
+            }
+        }
+
+        StoreMaintenance maintenance = new StoreMaintenance(repair, threads, checkpoint);
+        int status;
+        try {
+            status = maintenance.run(restart);
+        } catch (SQLException | IOException e) {
+            System.err.println("Maintenance failed: " + e.getMessage());
+            e.printStackTrace();
+            maintenance.writeCheckpoint();
+            status = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            maintenance.writeCheckpoint();
+            status = 1;
+        } finally {
+            maintenance.closeConnections();
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo;
+
+class StoredTrack {
+    private final int trackNumber;
+    private final StreamingAudio audio;
+    private final float volume;
+    private final boolean muted;
+    private final TrackAnalysis analysis;
+    private final boolean fromCache;
+
+    public StoredTrack(int trackNumber, StreamingAudio audio, float volume, boolean muted,
+                       TrackAnalysis analysis, boolean fromCache) {
+        this.trackNumber = trackNumber;
+        this.audio = audio;
+        this.volume = volume;
+        this.muted = muted;
+        this.analysis = analysis;
+        this.fromCache = fromCache;
+    }
+
+    public StoredTrack withAudio(StreamingAudio newAudio) {
+        return new StoredTrack(trackNumber, newAudio, volume, muted, analysis, fromCache);
+    }
+
+    public int getTrackNumber() {
+        return trackNumber;
+    }
+
+    public StreamingAudio getAudio() {
+        return audio;
+    }
+
+    /** Blocks until the whole track has been fetched. */
+    public byte[] getAudioData() {
+        return audio.awaitComplete();
+    }
+
+    public float getVolume() {
+        return volume;
+    }
+
+    public boolean isMuted() {
+        return muted;
+    }
+
+    /** @return the stored analysis, or {@code null} for rows saved before analysis existed */
+    public TrackAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    public boolean isFromCache() {
+        return fromCache;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A track's audio that may still be arriving. A loader appends bytes in
+ * order while playback reads behind it, so a track stored in chunks can
+ * start playing as soon as its first chunk is in. Once every byte has
+ * arrived the buffer behaves like the plain {@code byte[]} it wraps.
+ */
+class StreamingAudio {
+    private final byte[] data;
+    private final CompletableFuture<byte[]> completion = new CompletableFuture<>();
+    private volatile int available;
+
+    public StreamingAudio(int length) {
+        this.data = new byte[length];
+        if (length == 0) {
+            completion.complete(data);
+        }
+    }
+
+    private StreamingAudio(byte[] data) {
+        this.data = data;
+        this.available = data.length;
+        completion.complete(data);
+    }
+
+    public static StreamingAudio of(byte[] data) {
+        return new StreamingAudio(data);
+    }
+
+    public int length() {
+        return data.length;
+    }
+
+    public int available() {
+        return available;
+    }
+
+    public boolean isComplete() {
+        return completion.isDone();
+    }
+
+    /** Called by the loader, in order, as bytes arrive. */
+    public synchronized void append(byte[] src, int offset, int length) {
+        if (available + length > data.length) {
+            fail(new IOException("Received " + (available + length) + " bytes for a "
+                    + data.length + "-byte track"));
+            return;
+        }
+        System.arraycopy(src, offset, data, available, length);
+        available += length;
+        notifyAll();
+
+        if (available == data.length) {
+            completion.complete(data);
+        }
+    }
+
+    public synchronized void fail(Exception cause) {
+        completion.completeExceptionally(cause);
+        notifyAll();
+    }
+
+    /**
+     * Copies bytes starting at {@code position}, waiting up to
+     * {@code timeoutMillis} for the loader if they have not arrived yet.
+     *
+     * @return the number of bytes copied, 0 if the wait timed out, or -1 at
+     * the end of the track
+     */
+    public int read(long position, byte[] dst, int offset, int length, long timeoutMillis) throws InterruptedException {
+        if (position >= data.length) return -1;
+
+        if (available <= position) {
+            synchronized (this) {
+                if (available <= position && !completion.isDone()) {
+                    wait(timeoutMillis);
+                }
+            }
+            if (available <= position) {
+                if (completion.isCompletedExceptionally()) return -1;
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, available - position);
+        System.arraycopy(data, (int) position, dst, offset, count);
+        return count;
+    }
+
+    /** Blocks until the whole track has arrived. */
+    public byte[] awaitComplete() {
+        try {
+            return completion.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            throw new UncheckedIOException(new IOException("Loading audio failed", e.getCause()));
+        }
+    }
+
+    public CompletableFuture<byte[]> completion() {
+        return completion;
+    }
+}
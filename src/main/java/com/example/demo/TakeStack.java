@@ -0,0 +1,165 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A loop with overdubbed takes layered on top. Every take is one pass over
+ * the loop, stored at the loop's length and aligned to its start, and
+ * playback mixes the layers block by block. Once more than
+ * {@code maxTakes} takes pile up they are folded into the base on a
+ * background thread, so mixing work and memory per track stay bounded
+ * however many passes are recorded.
+ *
+ * <p>Arrays handed in or out are never modified afterwards; a fold builds a
+ * new base rather than adding into the old one, which may be shared with
+ * the {@link TrackCache}.
+ */
+class TakeStack {
+    static final int DEFAULT_MAX_TAKES = Integer.getInteger("loopstation.overdub.maxTakes", 4);
+
+    private static final ExecutorService FOLDER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "take-fold");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** An immutable snapshot, so the playback thread never sees a half-done fold. */
+    private static final class Layers {
+        final StreamingAudio base;
+        final List<byte[]> takes;
+
+        Layers(StreamingAudio base, List<byte[]> takes) {
+            this.base = base;
+            this.takes = takes;
+        }
+    }
+
+    private final int length;
+    private final int maxTakes;
+    private final AtomicBoolean folding = new AtomicBoolean(false);
+    private volatile Layers layers;
+    private volatile int version;
+
+    public TakeStack(StreamingAudio base, int maxTakes) {
+        this.length = base.length();
+        this.maxTakes = Math.max(1, maxTakes);
+        this.layers = new Layers(base, Collections.emptyList());
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int getTakeCount() {
+        return layers.takes.size();
+    }
+
+    /** Changes whenever a take is added; folding leaves the mix, and so the version, as it was. */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds one pass recorded from loop position {@code phase} onwards. A
+     * pass shorter than the loop leaves the rest of the take silent.
+     */
+    public void addTake(byte[] pass, int phase) {
+        byte[] take = new byte[length];
+        int count = Math.min(pass.length, length);
+        int first = Math.min(count, length - phase);
+        System.arraycopy(pass, 0, take, phase, first);
+        System.arraycopy(pass, first, take, 0, count - first);
+
+        synchronized (this) {
+            List<byte[]> takes = new ArrayList<>(layers.takes);
+            takes.add(take);
+            layers = new Layers(layers.base, Collections.unmodifiableList(takes));
+            version++;
+        }
+        scheduleFold();
+    }
+
+    private void scheduleFold() {
+        if (layers.takes.size() > maxTakes && folding.compareAndSet(false, true)) {
+            FOLDER.execute(this::fold);
+        }
+    }
+
+    private void fold() {
+        try {
+            Layers snapshot = layers;
+            byte[] folded = new byte[length];
+            System.arraycopy(snapshot.base.awaitComplete(), 0, folded, 0, length);
+            mix(folded, 0, 0, length, snapshot.takes);
+
+            synchronized (this) {
+                // Takes added while folding stay on top of the new base
+                List<byte[]> remaining = layers.takes.subList(snapshot.takes.size(), layers.takes.size());
+                layers = new Layers(StreamingAudio.of(folded), List.copyOf(remaining));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Folding takes failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            folding.set(false);
+        }
+        scheduleFold();
+    }
+
+    /**
+     * Reads the mix of the base and every take; see
+     * {@link StreamingAudio#read(long, byte[], int, int, long)}.
+     */
+    public int read(long position, byte[] dst, int offset, int len, long timeoutMillis) throws InterruptedException {
+        Layers snapshot = layers;
+        int count = snapshot.base.read(position, dst, offset, len, timeoutMillis);
+        if (count > 0) {
+            mix(dst, offset, (int) position, count, snapshot.takes);
+        }
+        return count;
+    }
+
+    /** @return a new array holding the base with every take mixed in */
+    public byte[] flatten() {
+        Layers snapshot = layers;
+        return flatten(snapshot.base.awaitComplete(), snapshot.takes);
+    }
+
+    /**
+     * Mixes the takes as they are now, once the base has arrived; takes
+     * added afterwards are not included.
+     */
+    public CompletableFuture<byte[]> flattenAsync() {
+        Layers snapshot = layers;
+        return snapshot.base.completion().thenApplyAsync(base -> flatten(base, snapshot.takes), FOLDER);
+    }
+
+    private byte[] flatten(byte[] base, List<byte[]> takes) {
+        if (takes.isEmpty()) return base;
+
+        byte[] mixed = base.clone();
+        mix(mixed, 0, 0, length, takes);
+        return mixed;
+    }
+
+    /** Adds the takes' 16-bit little-endian samples into {@code dst}, clipping at full scale. */
+    private static void mix(byte[] dst, int offset, int position, int count, List<byte[]> takes) {
+        if (takes.isEmpty()) return;
+
+        for (int i = 0; i + 1 < count; i += 2) {
+            int sum = (short) ((dst[offset + i + 1] << 8) | (dst[offset + i] & 0xFF));
+            for (byte[] take : takes) {
+                sum += (short) ((take[position + i + 1] << 8) | (take[position + i] & 0xFF));
+            }
+            sum = Math.max(-32768, Math.min(32767, sum));
+            dst[offset + i] = (byte) (sum & 0xFF);
+            dst[offset + i + 1] = (byte) ((sum >> 8) & 0xFF);
+        }
+    }
+}
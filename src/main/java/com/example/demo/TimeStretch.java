@@ -0,0 +1,268 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Changes a loop's tempo without changing its pitch, using WSOLA
+ * (waveform-similarity overlap-add). Hann-windowed segments are taken from
+ * the loop at the new tempo and overlap-added at the original spacing; each
+ * segment is shifted by up to {@link #TOLERANCE} samples to where it best
+ * continues the waveform already written, which avoids the phasing of plain
+ * overlap-add.
+ *
+ * <p>One instance stretches one loop live, a hop at a time, reading 16-bit
+ * mono PCM around the loop end as needed. {@link #render} stretches a whole
+ * loop ahead of time so steady playback at that tempo is a plain copy, and
+ * {@link #renderOnce} stretches audio that does not repeat.
+ */
+class TimeStretch {
+    static final int WINDOW = 1024;
+    static final int HOP = WINDOW / 2;
+    static final int TOLERANCE = 256;
+    static final double MIN_TEMPO = 0.5;
+    static final double MAX_TEMPO = 2.0;
+
+    // The similarity search first tries every fourth offset on every fourth sample
+    private static final int COARSE = 4;
+    private static final float[] HANN = new float[WINDOW];
+
+    private static final ExecutorService RENDERER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tempo-render");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // Periodic Hann: windows half a window apart sum to exactly one
+        for (int i = 0; i < WINDOW; i++) {
+            double s = Math.sin(Math.PI * i / WINDOW);
+            HANN[i] = (float) (s * s);
+        }
+    }
+
+    /** Random access to the loop; matches {@link StreamingAudio#read}. */
+    interface Source {
+        int read(long position, byte[] dst, int offset, int length, long timeoutMillis) throws InterruptedException;
+    }
+
+    private final Source source;
+    private final int loopSamples;
+    private volatile double tempo = 1.0;
+
+    private double nominal;
+    private int previous = -1;
+    private final float[] overlap = new float[WINDOW];
+    private final short[] candidates = new short[WINDOW + 2 * TOLERANCE];
+    private final short[] continuation = new short[WINDOW - HOP];
+    private final byte[] bytes = new byte[candidates.length * 2];
+
+    public TimeStretch(Source source, int loopLengthBytes) {
+        this.source = source;
+        this.loopSamples = loopLengthBytes / 2;
+    }
+
+    /** Loops shorter than one search window are played unstretched. */
+    static boolean canStretch(int loopLengthBytes) {
+        return loopLengthBytes / 2 >= WINDOW + 2 * TOLERANCE;
+    }
+
+    public void setTempo(double tempo) {
+        this.tempo = Math.max(MIN_TEMPO, Math.min(MAX_TEMPO, tempo));
+    }
+
+    /** Restarts the stretch at {@code sample} in the loop, forgetting the overlap. */
+    public void reset(double sample) {
+        nominal = wrap(sample);
+        previous = -1;
+        Arrays.fill(overlap, 0.0f);
+    }
+
+    /** @return the loop position, in samples, of the segment most recently added */
+    public double sourcePosition() {
+        return nominal;
+    }
+
+    /**
+     * Writes the next {@link #HOP} samples as 16-bit little-endian PCM.
+     *
+     * @return the number of bytes written, or 0 if the loop had not loaded
+     * far enough within {@code timeoutMillis}
+     */
+    public int step(byte[] out, int offset, long timeoutMillis) throws InterruptedException {
+        int searchStart = wrap((int) nominal - TOLERANCE);
+        if (!readSamples(searchStart, candidates, candidates.length, timeoutMillis)) return 0;
+
+        int best = TOLERANCE;
+        if (previous >= 0) {
+            if (!readSamples(wrap(previous + HOP), continuation, continuation.length, timeoutMillis)) return 0;
+            best = mostSimilarOffset();
+        }
+
+        for (int i = 0; i < WINDOW; i++) {
+            overlap[i] += HANN[i] * candidates[best + i];
+        }
+        for (int i = 0; i < HOP; i++) {
+            int sample = Math.max(-32768, Math.min(32767, Math.round(overlap[i])));
+            out[offset + i * 2] = (byte) (sample & 0xFF);
+            out[offset + i * 2 + 1] = (byte) ((sample >> 8) & 0xFF);
+        }
+        System.arraycopy(overlap, HOP, overlap, 0, WINDOW - HOP);
+        Arrays.fill(overlap, WINDOW - HOP, WINDOW, 0.0f);
+
+        previous = wrap(searchStart + best);
+        nominal = wrap(nominal + HOP * tempo);
+        return HOP * 2;
+    }
+
+    /** Coarse search over the tolerance, then a fine search around the winner. */
+    private int mostSimilarOffset() {
+        int best = TOLERANCE;
+        long bestScore = Long.MIN_VALUE;
+        for (int candidate = 0; candidate <= 2 * TOLERANCE; candidate += COARSE) {
+            long score = similarity(candidate, COARSE);
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+
+        int coarseBest = best;
+        bestScore = similarity(coarseBest, 2);
+        for (int candidate = Math.max(0, coarseBest - COARSE + 1);
+             candidate <= Math.min(2 * TOLERANCE, coarseBest + COARSE - 1); candidate++) {
+            long score = similarity(candidate, 2);
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private long similarity(int candidate, int stride) {
+        long sum = 0;
+        for (int i = 0; i < continuation.length; i += stride) {
+            sum += (long) continuation[i] * candidates[candidate + i];
+        }
+        return sum;
+    }
+
+    private boolean readSamples(int start, short[] dst, int count, long timeoutMillis) throws InterruptedException {
+        int needed = count * 2;
+        int filled = 0;
+        long position = start * 2L;
+        while (filled < needed) {
+            int read = source.read(position, bytes, filled,
+                    (int) Math.min(needed - filled, loopSamples * 2L - position), timeoutMillis);
+            if (read <= 0) return false;
+            filled += read;
+            position = (position + read) % (loopSamples * 2L);
+        }
+        for (int i = 0; i < count; i++) {
+            dst[i] = (short) ((bytes[i * 2 + 1] << 8) | (bytes[i * 2] & 0xFF));
+        }
+        return true;
+    }
+
+    private int wrap(int sample) {
+        return Math.floorMod(sample, loopSamples);
+    }
+
+    private double wrap(double sample) {
+        double wrapped = sample % loopSamples;
+        return wrapped < 0 ? wrapped + loopSamples : wrapped;
+    }
+
+    /**
+     * Stretches a whole loop so that it repeats seamlessly at {@code tempo}.
+     *
+     * @return the stretched loop, or {@code audioData} itself if it is too
+     * short to stretch
+     */
+    public static byte[] render(byte[] audioData, double tempo) {
+        if (!canStretch(audioData.length)) return audioData;
+
+        TimeStretch stretch = new TimeStretch(StreamingAudio.of(audioData)::read, audioData.length);
+        stretch.setTempo(tempo);
+        int outSamples = (int) Math.round(audioData.length / 2 / stretch.tempo);
+
+        // One hop of pre-roll so the first output hop is not faded in, and one
+        // extra hop past the end to crossfade into the start
+        byte[] hop = new byte[HOP * 2];
+        stretch.reset(-HOP * stretch.tempo);
+        byte[] out = new byte[((outSamples + HOP) / HOP + 1) * HOP * 2];
+        try {
+            stretch.step(hop, 0, 0);
+            for (int offset = 0; offset < out.length; offset += HOP * 2) {
+                stretch.step(out, offset, 0);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return audioData;
+        }
+
+        for (int i = 0; i < HOP; i++) {
+            float fade = (float) i / HOP;
+            int head = (short) ((out[i * 2 + 1] << 8) | (out[i * 2] & 0xFF));
+            int tailIndex = (outSamples + i) * 2;
+            int tail = (short) ((out[tailIndex + 1] << 8) | (out[tailIndex] & 0xFF));
+            int sample = Math.round(head * fade + tail * (1 - fade));
+            out[i * 2] = (byte) (sample & 0xFF);
+            out[i * 2 + 1] = (byte) ((sample >> 8) & 0xFF);
+        }
+        return Arrays.copyOf(out, outSamples * 2);
+    }
+
+    /**
+     * Stretches a one-shot recording, such as an overdub pass. Unlike
+     * {@link #render} it does not wrap around: beyond either end is silence,
+     * nothing is crossfaded in from the other end, and input of any length
+     * is stretched.
+     *
+     * @return {@code round(samples / tempo)} samples
+     */
+    public static byte[] renderOnce(byte[] audioData, double tempo) {
+        // Enough silence either side that no read ever reaches the wrap
+        int samples = audioData.length / 2;
+        int pad = 2 * (WINDOW + 2 * TOLERANCE);
+        byte[] padded = new byte[(samples + 2 * pad) * 2];
+        System.arraycopy(audioData, 0, padded, pad * 2, samples * 2);
+
+        TimeStretch stretch = new TimeStretch(StreamingAudio.of(padded)::read, padded.length);
+        stretch.setTempo(tempo);
+        int outSamples = (int) Math.round(samples / stretch.tempo);
+
+        byte[] hop = new byte[HOP * 2];
+        stretch.reset(pad - HOP * stretch.tempo);
+        byte[] out = new byte[(outSamples + HOP - 1) / HOP * HOP * 2];
+        try {
+            stretch.step(hop, 0, 0);
+            for (int offset = 0; offset < out.length; offset += HOP * 2) {
+                stretch.step(out, offset, 0);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return audioData;
+        }
+        return Arrays.copyOf(out, outSamples * 2);
+    }
+
+    /** {@link #renderOnce} on the shared background thread, in submission order. */
+    public static CompletableFuture<byte[]> renderOnceAsync(byte[] audioData, double tempo) {
+        return CompletableFuture.supplyAsync(() -> renderOnce(audioData, tempo), RENDERER);
+    }
+
+    /**
+     * Renders on the shared background thread. The job is skipped, completing
+     * with {@code null}, if {@code stillWanted} is false by the time it starts.
+     */
+    public static CompletableFuture<byte[]> renderAsync(Supplier<byte[]> audio, double tempo, BooleanSupplier stillWanted) {
+        return CompletableFuture.supplyAsync(
+                () -> stillWanted.getAsBoolean() ? render(audio.get(), tempo) : null, RENDERER);
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.demo;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Summary of a track's audio: duration, sample peak, RMS and integrated
+ * loudness (ITU-R BS.1770: K-weighted, 400 ms blocks, absolute and relative
+ * gating). Levels are in dBFS/LUFS and bottom out at {@link #FLOOR_DB} so
+ * silence can be stored and compared as an ordinary number.
+ */
+class TrackAnalysis {
+    static final float FLOOR_DB = -120.0f;
+    static final float SILENCE_THRESHOLD_DB = -60.0f;
+
+    private static final ExecutorService ANALYZER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "track-analysis");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long durationMillis;
+    private final float peakDbfs;
+    private final float rmsDbfs;
+    private final float loudnessLufs;
+
+    public TrackAnalysis(long durationMillis, float peakDbfs, float rmsDbfs, float loudnessLufs) {
+        this.durationMillis = durationMillis;
+        this.peakDbfs = peakDbfs;
+        this.rmsDbfs = rmsDbfs;
+        this.loudnessLufs = loudnessLufs;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public float getPeakDbfs() {
+        return peakDbfs;
+    }
+
+    public float getRmsDbfs() {
+        return rmsDbfs;
+    }
+
+    public float getLoudnessLufs() {
+        return loudnessLufs;
+    }
+
+    public boolean isSilent() {
+        return peakDbfs < SILENCE_THRESHOLD_DB;
+    }
+
+    @Override
+    public String toString() {
+        if (isSilent()) {
+            return formatDuration(durationMillis) + " · silent";
+        }
+        return String.format("%s · peak %.1f dBFS · RMS %.1f dBFS · %.1f LUFS",
+                formatDuration(durationMillis), peakDbfs, rmsDbfs, loudnessLufs);
+    }
+
+    static String formatDuration(long millis) {
+        return String.format("%d:%04.1f", millis / 60000, (millis % 60000) / 1000.0);
+    }
+
+    /** Analyzes {@code audioData} on the shared background analysis thread. */
+    public static CompletableFuture<TrackAnalysis> analyzeAsync(byte[] audioData, AudioFormat format) {
+        return CompletableFuture.supplyAsync(() -> analyze(audioData, format), ANALYZER);
+    }
+
+    /** Like {@link #analyzeAsync(byte[], AudioFormat)}, but also produces the audio on that thread. */
+    public static CompletableFuture<TrackAnalysis> analyzeAsync(Supplier<byte[]> audio, AudioFormat format) {
+        return CompletableFuture.supplyAsync(() -> analyze(audio.get(), format), ANALYZER);
+    }
+
+    public static TrackAnalysis analyze(byte[] audioData, AudioFormat format) {
+        if (format.getSampleSizeInBits() != 16 || format.isBigEndian()) {
+            throw new IllegalArgumentException("Analysis needs 16-bit little-endian PCM, got " + format);
+        }
+
+        int channels = format.getChannels();
+        int frames = audioData.length / format.getFrameSize();
+        double sampleRate = format.getSampleRate();
+
+        Biquad[] shelf = new Biquad[channels];
+        Biquad[] highPass = new Biquad[channels];
+        for (int c = 0; c < channels; c++) {
+            shelf[c] = Biquad.kWeightingShelf(sampleRate);
+            highPass[c] = Biquad.kWeightingHighPass(sampleRate);
+        }
+
+        // Loudness blocks are 400 ms with 75% overlap, so energy is summed per
+        // 100 ms step and each block adds up four consecutive steps.
+        int stepFrames = (int) Math.round(sampleRate / 10);
+        List<Double> stepEnergy = new ArrayList<>();
+        double currentStep = 0;
+        int framesInStep = 0;
+
+        int peak = 0;
+        double sumSquares = 0;
+
+        for (int f = 0; f < frames; f++) {
+            double weighted = 0;
+            for (int c = 0; c < channels; c++) {
+                int offset = (f * channels + c) * 2;
+                int sample = (short) ((audioData[offset + 1] << 8) | (audioData[offset] & 0xFF));
+                peak = Math.max(peak, Math.abs(sample));
+
+                double x = sample / 32768.0;
+                sumSquares += x * x;
+
+                double k = highPass[c].process(shelf[c].process(x));
+                weighted += k * k;
+            }
+
+            currentStep += weighted;
+            if (++framesInStep == stepFrames) {
+                stepEnergy.add(currentStep);
+                currentStep = 0;
+                framesInStep = 0;
+            }
+        }
+
+        long durationMillis = Math.round(frames * 1000.0 / sampleRate);
+        float peakDbfs = toDb(peak / 32768.0);
+        float rmsDbfs = frames == 0 ? FLOOR_DB
+                : toDb(Math.sqrt(sumSquares / ((double) frames * channels)));
+        float loudness = integratedLoudness(stepEnergy, stepFrames * 4);
+
+        return new TrackAnalysis(durationMillis, peakDbfs, rmsDbfs, loudness);
+    }
+
+    private static float integratedLoudness(List<Double> stepEnergy, int blockFrames) {
+        int blocks = stepEnergy.size() - 3;
+        if (blocks <= 0) return FLOOR_DB;
+
+        double[] blockPower = new double[blocks];
+        for (int b = 0; b < blocks; b++) {
+            blockPower[b] = (stepEnergy.get(b) + stepEnergy.get(b + 1)
+                    + stepEnergy.get(b + 2) + stepEnergy.get(b + 3)) / blockFrames;
+        }
+
+        double absoluteGate = -70.0;
+        double sum = 0;
+        int count = 0;
+        for (double power : blockPower) {
+            if (blockLoudness(power) > absoluteGate) {
+                sum += power;
+                count++;
+            }
+        }
+        if (count == 0) return FLOOR_DB;
+
+        double relativeGate = blockLoudness(sum / count) - 10.0;
+        sum = 0;
+        count = 0;
+        for (double power : blockPower) {
+            double loudness = blockLoudness(power);
+            if (loudness > absoluteGate && loudness > relativeGate) {
+                sum += power;
+                count++;
+            }
+        }
+        if (count == 0) return FLOOR_DB;
+
+        return (float) Math.max(FLOOR_DB, blockLoudness(sum / count));
+    }
+
+    private static double blockLoudness(double power) {
+        return power > 0 ? -0.691 + 10 * Math.log10(power) : Double.NEGATIVE_INFINITY;
+    }
+
+    private static float toDb(double linear) {
+        return linear > 0 ? (float) Math.max(FLOOR_DB, 20 * Math.log10(linear)) : FLOOR_DB;
+    }
+
+    /** Direct form I biquad with the BS.1770 K-weighting designs. */
+    private static class Biquad {
+        private final double b0, b1, b2, a1, a2;
+        private double x1, x2, y1, y2;
+
+        Biquad(double b0, double b1, double b2, double a1, double a2) {
+            this.b0 = b0;
+            this.b1 = b1;
+            this.b2 = b2;
+            this.a1 = a1;
+            this.a2 = a2;
+        }
+
+        static Biquad kWeightingShelf(double sampleRate) {
+            double f0 = 1681.974450955533;
+            double gain = 3.999843853973347;
+            double q = 0.7071752369554196;
+
+            double k = Math.tan(Math.PI * f0 / sampleRate);
+            double vh = Math.pow(10.0, gain / 20.0);
+            double vb = Math.pow(vh, 0.4996667741545416);
+            double a0 = 1.0 + k / q + k * k;
+            return new Biquad(
+                    (vh + vb * k / q + k * k) / a0,
+                    2.0 * (k * k - vh) / a0,
+                    (vh - vb * k / q + k * k) / a0,
+                    2.0 * (k * k - 1.0) / a0,
+                    (1.0 - k / q + k * k) / a0);
+        }
+
+        static Biquad kWeightingHighPass(double sampleRate) {
+            double f0 = 38.13547087602444;
+            double q = 0.5003270373238773;
+
+            double k = Math.tan(Math.PI * f0 / sampleRate);
+            double a0 = 1.0 + k / q + k * k;
+            return new Biquad(1.0, -2.0, 1.0,
+                    2.0 * (k * k - 1.0) / a0,
+                    (1.0 - k / q + k * k) / a0);
+        }
+
+        double process(double x) {
+            double y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+            return y;
+        }
+    }
+}
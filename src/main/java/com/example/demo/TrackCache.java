@@ -0,0 +1,143 @@
+package com.example.demo;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide cache of playback-ready track audio, so switching back to a
+ * project already loaded in this session skips the database. Entries are
+ * keyed by project, track number and the project's last-modified time, so a
+ * saved change never serves stale audio; superseded versions simply age
+ * out of the LRU order.
+ *
+ * <p>The byte budget comes from {@code loopstation.cache.bytes} (default
+ * 256 MiB, 0 disables the cache). With {@code loopstation.cache.offHeap=true}
+ * entries live in direct buffers outside the Java heap and are copied out on
+ * a hit; otherwise the cached array itself is handed out, which callers must
+ * treat as read-only.
+ */
+class TrackCache {
+    private static final TrackCache SHARED = new TrackCache(
+            Long.getLong("loopstation.cache.bytes", 256L * 1024 * 1024),
+            Boolean.getBoolean("loopstation.cache.offHeap"));
+
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<String, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long usedBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TrackCache(long maxBytes, boolean offHeap) {
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+
+    public static TrackCache shared() {
+        return SHARED;
+    }
+
+    private static String key(int projectId, int trackNumber, long lastModified) {
+        return projectId + ":" + trackNumber + "@" + lastModified;
+    }
+
+    /** @return the cached audio, or {@code null} on a miss */
+    public byte[] get(int projectId, int trackNumber, long lastModified) {
+        Object entry;
+        lock.lock();
+        try {
+            entry = entries.get(key(projectId, trackNumber, lastModified));
+        } finally {
+            lock.unlock();
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (entry instanceof ByteBuffer buffer) {
+            byte[] copy = new byte[buffer.capacity()];
+            buffer.duplicate().get(copy);
+            return copy;
+        }
+        return (byte[]) entry;
+    }
+
+    public void put(int projectId, int trackNumber, long lastModified, byte[] audioData) {
+        if (audioData.length > maxBytes) return;
+
+        Object entry = audioData;
+        if (offHeap) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(audioData.length);
+            buffer.put(audioData).flip();
+            entry = buffer;
+        }
+
+        lock.lock();
+        try {
+            Object previous = entries.put(key(projectId, trackNumber, lastModified), entry);
+            if (previous != null) {
+                usedBytes -= sizeOf(previous);
+            }
+            usedBytes += audioData.length;
+
+            Iterator<Map.Entry<String, Object>> it = entries.entrySet().iterator();
+            while (usedBytes > maxBytes && it.hasNext()) {
+                usedBytes -= sizeOf(it.next().getValue());
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long sizeOf(Object entry) {
+        return entry instanceof ByteBuffer buffer ? buffer.capacity() : ((byte[]) entry).length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getEntryCount() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Track cache: %d hits, %d misses, %d evictions, %d entries, %.1f of %.1f MiB%s",
+                getHits(), getMisses(), getEvictions(), getEntryCount(),
+                getUsedBytes() / 1048576.0, maxBytes / 1048576.0, offHeap ? " off-heap" : "");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo;
+
+class TrackLayout {
+    private final int projectId;
+    private final int trackNumber;
+    private final long audioLength;
+    private final int chunkCount;
+    private final long checksum;
+    private final boolean monolithic;
+
+    public TrackLayout(int projectId, int trackNumber, long audioLength, int chunkCount, long checksum, boolean monolithic) {
+        this.projectId = projectId;
+        this.trackNumber = trackNumber;
+        this.audioLength = audioLength;
+        this.chunkCount = chunkCount;
+        this.checksum = checksum;
+        this.monolithic = monolithic;
+    }
+
+    public int getProjectId() {
+        return projectId;
+    }
+
+    public int getTrackNumber() {
+        return trackNumber;
+    }
+
+    /** @return the stored length, or -1 for rows that predate chunked storage */
+    public long getAudioLength() {
+        return audioLength;
+    }
+
+    /** @return the number of chunks, or -1 if the audio is still a single BLOB */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /** @return the stored CRC-32, or -1 if none has been computed */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public boolean isMonolithic() {
+        return monolithic;
+    }
+}
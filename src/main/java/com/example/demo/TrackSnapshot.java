@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What saving a track needs, captured on the FX thread so the save itself
+ * can run elsewhere while the track is played, overdubbed or cleared.
+ */
+class TrackSnapshot {
+    private final int trackNumber;
+    private final CompletableFuture<byte[]> audio;
+    private final float volume;
+    private final boolean muted;
+    private final CompletableFuture<TrackAnalysis> analysis;
+
+    public TrackSnapshot(int trackNumber, CompletableFuture<byte[]> audio, float volume, boolean muted,
+                         CompletableFuture<TrackAnalysis> analysis) {
+        this.trackNumber = trackNumber;
+        this.audio = audio;
+        this.volume = volume;
+        this.muted = muted;
+        this.analysis = analysis;
+    }
+
+    public int getTrackNumber() {
+        return trackNumber;
+    }
+
+    /** Completes once a track that is still loading has fully arrived, with any takes mixed in. */
+    public CompletableFuture<byte[]> getAudio() {
+        return audio;
+    }
+
+    public float getVolume() {
+        return volume;
+    }
+
+    public boolean isMuted() {
+        return muted;
+    }
+
+    public CompletableFuture<TrackAnalysis> getAnalysis() {
+        return analysis;
+    }
+}
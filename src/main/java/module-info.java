@@ -1,9 +1,9 @@
 module com.example.demo {
     requires javafx.controls;
-    requires javafx.fxml;
     requires java.desktop;
     requires java.sql;
+    requires jdk.httpserver;
 
     exports com.example.demo;
-    opens com.example.demo to javafx.graphics, javafx.fxml;
+    opens com.example.demo to javafx.graphics;
 }
\ No newline at end of file
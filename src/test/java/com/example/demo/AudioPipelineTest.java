@@ -0,0 +1,197 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Recording and playback run against the in-memory backend's clock, so every result is exact. */
+class AudioPipelineTest {
+    private static final AudioFormat AUDIO_FORMAT = new AudioFormat(44100.0f, 16, 1, true, false);
+    private static final int RATE = (int) AUDIO_FORMAT.getSampleRate();
+    private static final int STEP_FRAMES = RATE / 100;
+    private static final long IDLE_TIMEOUT_MILLIS = 5000;
+
+    @Test
+    void recordingMatchesInput() throws Exception {
+        MemoryAudioBackend.Signal sine = MemoryAudioBackend.Signal.sine(440, 0.5, RATE);
+        MemoryAudioBackend backend = new MemoryAudioBackend(sine, false);
+
+        AudioRecorder recorder = new AudioRecorder(AUDIO_FORMAT, backend);
+        recorder.startRecording();
+        backend.runLockstep(2 * RATE, STEP_FRAMES, IDLE_TIMEOUT_MILLIS);
+        byte[] recorded = backend.runUntilDone(STEP_FRAMES, recorder::stopRecording);
+
+        assertTrue(recorded.length >= 2 * RATE * 2, "recorded " + recorded.length + " bytes");
+        byte[] expected = new byte[recorded.length];
+        for (int frame = 0; frame < expected.length / 2; frame++) {
+            int sample = (int) Math.round(sine.valueAt(frame, 0) * 32767);
+            expected[frame * 2] = (byte) sample;
+            expected[frame * 2 + 1] = (byte) (sample >> 8);
+        }
+        assertArrayEquals(expected, recorded);
+    }
+
+    @Test
+    void loopPlaysBackExactlyWithoutUnderruns() throws Exception {
+        MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, true);
+        byte[] loop = noise(RATE, 1);
+
+        AudioPlayer player = new AudioPlayer(loop, AUDIO_FORMAT, backend);
+        MemoryAudioBackend.MemoryOutput output = backend.getOutputs().get(0);
+        player.play();
+        backend.runLockstep(3 * RATE, STEP_FRAMES, IDLE_TIMEOUT_MILLIS);
+        long underruns = output.getUnderrunFrames();
+        byte[] played = output.getCaptured();
+        backend.runUntilDone(STEP_FRAMES, () -> {
+            player.close();
+            return null;
+        });
+
+        assertEquals(0, underruns);
+        assertEquals(3 * RATE * 2, played.length);
+        for (int i = 0; i < played.length; i++) {
+            assertEquals(loop[i % loop.length], played[i], "byte " + i);
+        }
+    }
+
+    @Test
+    void stretchedPlaybackKeepsUp() throws Exception {
+        MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, false);
+
+        AudioPlayer player = new AudioPlayer(noise(RATE * 2, 2), AUDIO_FORMAT, backend);
+        MemoryAudioBackend.MemoryOutput output = backend.getOutputs().get(0);
+        player.setTempo(1.5);
+        player.play();
+        backend.runLockstep(3 * RATE, STEP_FRAMES, IDLE_TIMEOUT_MILLIS);
+        long underruns = output.getUnderrunFrames();
+        long framesPlayed = output.getFramesPlayed();
+        backend.runUntilDone(STEP_FRAMES, () -> {
+            player.close();
+            return null;
+        });
+
+        assertEquals(0, underruns);
+        assertEquals(3 * RATE, framesPlayed);
+    }
+
+    @Test
+    void overdubPhaseCompensatesOutputLatency() throws Exception {
+        int loopFrames = RATE / 2;
+        int impulseFrame = 1000;
+        byte[] loop = new byte[loopFrames * 2];
+        loop[impulseFrame * 2 + 1] = 0x40;
+        // The microphone hears the speaker with no delay of its own; playback starts at frame 0
+        MemoryAudioBackend backend = new MemoryAudioBackend(
+                (frame, channel) -> frame % loopFrames == impulseFrame ? 0.5 : 0.0, true);
+
+        AudioPlayer player = new AudioPlayer(loop, AUDIO_FORMAT, backend);
+        LevelMeter meter = new LevelMeter();
+        player.setLevelMeter(meter);
+        MemoryAudioBackend.MemoryOutput output = backend.getOutputs().get(0);
+        player.play();
+        // The player publishes its position after each 4096-byte block, so stepping a block
+        // at a time leaves the meter up to date at every idle point
+        int blockFrames = 2048;
+        backend.runLockstep(7 * blockFrames, blockFrames, IDLE_TIMEOUT_MILLIS);
+
+        // The player keeps the line full, so what it has written is one whole buffer ahead of what is heard
+        int bufferFrames = output.getBufferSize() / 2;
+        assertEquals(0, output.available());
+        assertEquals(RATE / 10, bufferFrames);
+        int phase = (int) (meter.position() / 2);
+        assertEquals(7 * blockFrames, phase);
+
+        AudioRecorder recorder = new AudioRecorder(AUDIO_FORMAT, backend);
+        recorder.startRecording();
+        backend.runLockstep(loopFrames, STEP_FRAMES, IDLE_TIMEOUT_MILLIS);
+        byte[] pass = backend.runUntilDone(STEP_FRAMES, recorder::stopRecording);
+        byte[] played = output.getCaptured();
+        backend.runUntilDone(STEP_FRAMES, () -> {
+            player.close();
+            return null;
+        });
+
+        assertEquals(0x40, played[(loopFrames + impulseFrame) * 2 + 1]);
+        int recordedImpulse = loudestFrame(pass, loopFrames);
+        assertEquals(impulseFrame, (phase + recordedImpulse) % loopFrames,
+                "recorded impulse at " + recordedImpulse + " from phase " + phase);
+    }
+
+    @Test
+    void bufferSizesAreGrantedInWholeFrames() throws Exception {
+        MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, false);
+        AudioFormat stereo = new AudioFormat(44100.0f, 16, 2, true, false);
+
+        assertEquals(1000, backend.openOutput(AUDIO_FORMAT, 1001).getBufferSize());
+        assertEquals(1000, backend.openInput(stereo, 1003).getBufferSize());
+        assertEquals(2, backend.openOutput(AUDIO_FORMAT, 1).getBufferSize());
+        // No request gets the device default of a tenth of a second
+        assertEquals(RATE / 10 * 2, backend.openOutput(AUDIO_FORMAT, 0).getBufferSize());
+        assertEquals(RATE / 10 * 4, backend.openInput(stereo, 0).getBufferSize());
+    }
+
+    @Test
+    void failedLoadStopsPlayback() throws Exception {
+        MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, false);
+        StreamingAudio audio = new StreamingAudio(RATE * 2);
+        audio.fail(new IOException("connection lost"));
+
+        AudioPlayer player = new AudioPlayer(audio, AUDIO_FORMAT, backend);
+        player.play();
+        long deadline = System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS;
+        while (player.isPlaying() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(player.isPlaying());
+        player.close();
+    }
+
+    @Test
+    void missingFramesCountAsUnderruns() throws Exception {
+        MemoryAudioBackend backend = new MemoryAudioBackend(MemoryAudioBackend.Signal.SILENCE, true);
+        AudioBackend.Output output = backend.openOutput(AUDIO_FORMAT, 0);
+        MemoryAudioBackend.MemoryOutput memoryOutput = backend.getOutputs().get(0);
+        output.start();
+
+        output.write(new byte[200], 0, 200);
+        backend.advance(300);
+
+        assertEquals(200, memoryOutput.getUnderrunFrames());
+        assertEquals(300, memoryOutput.getFramesPlayed());
+        assertEquals(600, memoryOutput.getCaptured().length);
+        output.close();
+    }
+
+    private static int loudestFrame(byte[] data, int frames) {
+        int loudest = 0;
+        int peak = -1;
+        for (int i = 0; i < Math.min(frames, data.length / 2); i++) {
+            int sample = Math.abs((short) ((data[i * 2 + 1] << 8) | (data[i * 2] & 0xFF)));
+            if (sample > peak) {
+                peak = sample;
+                loudest = i;
+            }
+        }
+        return loudest;
+    }
+
+    /** Reproducible noise at half scale, so volume and mixing never clip. */
+    private static byte[] noise(int frames, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            int sample = random.nextInt(32768) - 16384;
+            data[i * 2] = (byte) sample;
+            data[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        return data;
+    }
+}
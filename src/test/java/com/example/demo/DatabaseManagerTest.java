@@ -0,0 +1,107 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatabaseManagerTest {
+    // Spans several chunks, so loading goes through the prefetch threads
+    private static final int LENGTH = DatabaseManager.CHUNK_SIZE * 5 / 2;
+
+    private Connection keepAlive;
+    private DatabaseManager dbManager;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        String url = "jdbc:h2:mem:database" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+        keepAlive = DriverManager.getConnection(url, "sa", "");
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE projects ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "name VARCHAR(255) NOT NULL, "
+                    + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "last_modified TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            stmt.executeUpdate("CREATE TABLE tracks ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "project_id INT NOT NULL, "
+                    + "track_number INT NOT NULL, "
+                    + "audio_data LONGBLOB NOT NULL, "
+                    + "volume FLOAT NOT NULL, "
+                    + "is_muted BOOLEAN NOT NULL)");
+        }
+
+        dbManager = new DatabaseManager(url, "sa", "");
+        assertTrue(dbManager.connect(), "connect and migrate the schema");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        dbManager.close();
+        keepAlive.close();
+    }
+
+    @Test
+    void savedTracksLoadBackInChunks() throws Exception {
+        byte[] first = pattern(1);
+        byte[] second = pattern(2);
+        int projectId = dbManager.saveProject("demo", List.of(track(1, first, 1.0f), track(2, second, 0.25f)));
+
+        // Look past the cache that saving seeds
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.executeUpdate("UPDATE projects SET last_modified = TIMESTAMPADD(SECOND, 1, last_modified)");
+        }
+        List<StoredTrack> tracks = dbManager.loadTracks(projectId);
+
+        assertEquals(2, tracks.size());
+        assertArrayEquals(first, tracks.get(0).getAudioData());
+        assertArrayEquals(second, tracks.get(1).getAudioData());
+        assertEquals(0.25f, tracks.get(1).getVolume());
+    }
+
+    @Test
+    void failedUpdateKeepsPreviousTracks() throws Exception {
+        int projectId = dbManager.saveProject("demo", List.of(track(1, pattern(1), 1.0f)));
+
+        // The second track's chunks collide with the first's partway through the rewrite
+        List<TrackSnapshot> clashing = List.of(track(1, pattern(3), 0.5f), track(1, pattern(4), 0.5f));
+        assertThrows(SQLException.class, () -> dbManager.updateProject(projectId, "renamed", clashing));
+
+        assertEquals(1, count("SELECT COUNT(*) FROM tracks"));
+        assertEquals(DatabaseManager.chunkCount(LENGTH), count("SELECT COUNT(*) FROM track_chunks"));
+        assertEquals(1, count("SELECT COUNT(*) FROM projects WHERE name = 'demo'"));
+    }
+
+    private int count(String select) throws SQLException {
+        try (Statement stmt = keepAlive.createStatement();
+             ResultSet rs = stmt.executeQuery(select)) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    private static TrackSnapshot track(int trackNumber, byte[] audio, float volume) {
+        return new TrackSnapshot(trackNumber, CompletableFuture.completedFuture(audio), volume, false,
+                CompletableFuture.completedFuture(null));
+    }
+
+    private static byte[] pattern(int seed) {
+        byte[] data = new byte[LENGTH];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * seed + i / 7);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LevelMeterTest {
+
+    @Test
+    void peakIsTheLoudestBlockSinceTheLastFrame() {
+        LevelMeter meter = new LevelMeter();
+        meter.publish(0.2f, 0.1f, 0);
+        meter.publish(0.6f, 0.3f, 4096);
+        meter.publish(0.4f, 0.2f, 8192);
+
+        assertEquals(0.6f, meter.takePeak());
+        meter.publish(0.1f, 0.05f, 12288);
+        assertEquals(0.1f, meter.takePeak());
+    }
+
+    @Test
+    void frameWithoutNewBlockKeepsThePeak() {
+        LevelMeter meter = new LevelMeter();
+        meter.publish(0.5f, 0.25f, 0);
+
+        assertEquals(0.5f, meter.takePeak());
+        assertEquals(0.5f, meter.takePeak());
+        assertEquals(0.5f, meter.takePeak());
+    }
+
+    @Test
+    void peakPublishedDuringTakeIsNotLost() throws InterruptedException {
+        LevelMeter meter = new LevelMeter();
+        int blocks = 200_000;
+        Thread audio = new Thread(() -> {
+            for (int i = 1; i <= blocks; i++) {
+                meter.publish(i / (float) blocks, 0.0f, i);
+            }
+        });
+        audio.start();
+        while (audio.isAlive()) {
+            meter.takePeak();
+        }
+        audio.join();
+
+        // Whichever frame took the final block, its peak is the last one shown
+        assertEquals(1.0f, meter.takePeak());
+    }
+
+    @Test
+    void resetDropsThePeak() {
+        LevelMeter meter = new LevelMeter();
+        meter.publish(0.5f, 0.25f, 0);
+        meter.takePeak();
+        meter.reset();
+
+        assertEquals(0.0f, meter.takePeak());
+        assertEquals(0.0f, meter.takePeak());
+    }
+}
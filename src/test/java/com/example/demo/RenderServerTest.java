@@ -0,0 +1,183 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderServerTest {
+    private static final int FRAMES = 44100;
+
+    private String url;
+    private Connection keepAlive;
+    private DatabaseManager dbManager;
+    private RenderServer server;
+
+    @BeforeEach
+    void setUp() throws SQLException, IOException {
+        // The schema as the first release created it; connect() has to bring it up to date
+        url = "jdbc:h2:mem:render" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+        keepAlive = DriverManager.getConnection(url, "sa", "");
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE projects ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "name VARCHAR(255) NOT NULL, "
+                    + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "last_modified TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            stmt.executeUpdate("CREATE TABLE tracks ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "project_id INT NOT NULL, "
+                    + "track_number INT NOT NULL, "
+                    + "audio_data LONGBLOB NOT NULL, "
+                    + "volume FLOAT NOT NULL, "
+                    + "is_muted BOOLEAN NOT NULL)");
+            stmt.executeUpdate("INSERT INTO projects (name) VALUES ('demo')");
+        }
+        insertTrack(1, tone(1000), 1.0f);
+        insertTrack(2, tone(-1000), 0.5f);
+
+        System.setProperty("loopstation.db.url", url);
+        System.setProperty("loopstation.db.user", "sa");
+        System.setProperty("loopstation.db.password", "");
+        dbManager = new DatabaseManager();
+        assertTrue(dbManager.connect(), "connect and migrate the schema");
+
+        server = new RenderServer(dbManager, 2, 16L * 1024 * 1024);
+        server.start(0);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        server.stop();
+        dbManager.close();
+        keepAlive.close();
+        System.clearProperty("loopstation.db.url");
+        System.clearProperty("loopstation.db.user");
+        System.clearProperty("loopstation.db.password");
+    }
+
+    @Test
+    void servesMixAsWav() throws Exception {
+        Response response = get("/projects/1/mix.wav");
+
+        assertEquals(200, response.status());
+        assertEquals("audio/wav", response.contentType());
+        byte[] body = response.body();
+        assertEquals(44 + FRAMES * 2, body.length);
+
+        ByteBuffer header = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("RIFF", ascii(body, 0));
+        assertEquals(body.length - 8, header.getInt(4));
+        assertEquals("WAVE", ascii(body, 8));
+        assertEquals("fmt ", ascii(body, 12));
+        assertEquals(1, header.getShort(20));
+        assertEquals(1, header.getShort(22));
+        assertEquals(44100, header.getInt(24));
+        assertEquals(16, header.getShort(34));
+        assertEquals("data", ascii(body, 36));
+        assertEquals(FRAMES * 2, header.getInt(40));
+
+        // 1000 at full volume plus -1000 at half
+        assertEquals(500, header.getShort(44));
+        assertEquals(500, header.getShort(body.length - 2));
+    }
+
+    @Test
+    void repeatRequestIsServedFromCache() throws Exception {
+        byte[] first = get("/projects/1/mix.wav").body();
+        assertEquals(0, server.getCacheHits());
+
+        Response second = get("/projects/1/mix.wav");
+        assertEquals(200, second.status());
+        assertArrayEquals(first, second.body());
+        assertEquals(1, server.getCacheHits());
+    }
+
+    @Test
+    void editedProjectIsRenderedAgain() throws Exception {
+        get("/projects/1/mix.wav");
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.executeUpdate("UPDATE projects SET last_modified = TIMESTAMPADD(SECOND, 1, last_modified) WHERE id = 1");
+        }
+
+        assertEquals(200, get("/projects/1/mix.wav").status());
+        assertEquals(0, server.getCacheHits());
+    }
+
+    @Test
+    void previewLeavesLegacyTracksAsTheyAre() throws Exception {
+        assertEquals(200, get("/projects/1/mix.wav").status());
+
+        try (Statement stmt = keepAlive.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT "
+                     + "(SELECT COUNT(*) FROM tracks WHERE audio_data IS NOT NULL), "
+                     + "(SELECT COUNT(*) FROM track_chunks)")) {
+            assertTrue(rs.next());
+            assertEquals(2, rs.getInt(1));
+            assertEquals(0, rs.getInt(2));
+        }
+    }
+
+    @Test
+    void unknownProjectIsNotFound() throws Exception {
+        assertEquals(404, get("/projects/42/mix.wav").status());
+        assertEquals(400, get("/projects/abc/mix.wav").status());
+        assertEquals(404, get("/projects/1/mix.mp3").status());
+    }
+
+    private Response get(String path) throws IOException {
+        URI uri = URI.create("http://localhost:" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                return new Response(status, connection.getContentType(), in.readAllBytes());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private record Response(int status, String contentType, byte[] body) {
+    }
+
+    private void insertTrack(int trackNumber, byte[] audio, float volume) throws SQLException {
+        String insert = "INSERT INTO tracks (project_id, track_number, audio_data, volume, is_muted) VALUES (1, ?, ?, ?, FALSE)";
+        try (PreparedStatement stmt = keepAlive.prepareStatement(insert)) {
+            stmt.setInt(1, trackNumber);
+            stmt.setBytes(2, audio);
+            stmt.setFloat(3, volume);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static byte[] tone(int sample) {
+        byte[] data = new byte[FRAMES * 2];
+        for (int i = 0; i < FRAMES; i++) {
+            data[i * 2] = (byte) sample;
+            data[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        return data;
+    }
+
+    private static String ascii(byte[] data, int offset) {
+        return new String(data, offset, 4, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreMaintenanceTest {
+    @TempDir
+    Path tempDir;
+
+    private Connection keepAlive;
+    private Path checkpoint;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        String url = "jdbc:h2:mem:maintenance" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+        keepAlive = DriverManager.getConnection(url, "sa", "");
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE projects ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "name VARCHAR(255) NOT NULL, "
+                    + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "last_modified TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            stmt.executeUpdate("CREATE TABLE tracks ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "project_id INT NOT NULL, "
+                    + "track_number INT NOT NULL, "
+                    + "audio_data LONGBLOB NOT NULL, "
+                    + "volume FLOAT NOT NULL, "
+                    + "is_muted BOOLEAN NOT NULL)");
+            // Project 1 is empty, project 2 has one intact track
+            stmt.executeUpdate("INSERT INTO projects (name) VALUES ('empty')");
+            stmt.executeUpdate("INSERT INTO projects (name) VALUES ('intact')");
+        }
+        String insert = "INSERT INTO tracks (project_id, track_number, audio_data, volume, is_muted) VALUES (2, 1, ?, 1.0, FALSE)";
+        try (PreparedStatement stmt = keepAlive.prepareStatement(insert)) {
+            stmt.setBytes(1, new byte[4410 * 2]);
+            stmt.executeUpdate();
+        }
+
+        System.setProperty("loopstation.db.url", url);
+        System.setProperty("loopstation.db.user", "sa");
+        System.setProperty("loopstation.db.password", "");
+        checkpoint = tempDir.resolve("maintenance.checkpoint");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        keepAlive.close();
+        System.clearProperty("loopstation.db.url");
+        System.clearProperty("loopstation.db.user");
+        System.clearProperty("loopstation.db.password");
+    }
+
+    @Test
+    void reportsEmptyProjectAndStoresChecksums() throws Exception {
+        int status = new StoreMaintenance(false, 2, checkpoint).run(false);
+
+        assertEquals(2, status);
+        assertFalse(Files.exists(checkpoint), "a finished run leaves no checkpoint");
+        try (Statement stmt = keepAlive.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT audio_crc32 FROM tracks WHERE project_id = 2")) {
+            assertTrue(rs.next());
+            assertEquals(DatabaseManager.checksum(new byte[4410 * 2]), rs.getLong(1));
+        }
+    }
+
+    @Test
+    void repairDeletesEmptyProject() throws Exception {
+        int status = new StoreMaintenance(true, 2, checkpoint).run(false);
+
+        assertEquals(0, status);
+        try (Statement stmt = keepAlive.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM projects")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void uncheckedFailureKeepsCheckpointBeforeProject() throws Exception {
+        StoreMaintenance maintenance = new StoreMaintenance(false, 2, checkpoint) {
+            @Override
+            void checkTrack(DatabaseManager db, TrackLayout layout) {
+                throw new ArrayIndexOutOfBoundsException("corrupt row in project " + layout.getProjectId());
+            }
+        };
+
+        assertEquals(2, maintenance.run(false));
+        assertTrue(Files.exists(checkpoint), "a run with failures keeps its checkpoint");
+        assertEquals("1", Files.readString(checkpoint).trim());
+    }
+
+    @Test
+    void resumesAfterCheckpoint() throws Exception {
+        Files.writeString(checkpoint, "1");
+
+        // The empty project is before the checkpoint, so nothing is wrong with the rest
+        assertEquals(0, new StoreMaintenance(false, 2, checkpoint).run(false));
+        assertFalse(Files.exists(checkpoint));
+    }
+}
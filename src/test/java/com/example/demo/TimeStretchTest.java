@@ -0,0 +1,54 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeStretchTest {
+
+    @Test
+    void oneShotDoesNotWrapItsEndIntoItsStart() {
+        // Silence, then a loud tail; a looping render crossfades that tail into the first hop
+        short[] samples = new short[20_000];
+        for (int i = samples.length - 4_000; i < samples.length; i++) {
+            samples[i] = (short) (i % 2 == 0 ? 20_000 : -20_000);
+        }
+
+        short[] stretched = toSamples(TimeStretch.renderOnce(toBytes(samples), 1.25));
+
+        assertEquals(16_000, stretched.length);
+        for (int i = 0; i < TimeStretch.HOP; i++) {
+            assertEquals(0, stretched[i], "sample " + i);
+        }
+    }
+
+    @Test
+    void shortInputIsStillStretched() {
+        short[] samples = new short[500];
+        Arrays.fill(samples, (short) 1000);
+
+        short[] faster = toSamples(TimeStretch.renderOnce(toBytes(samples), 1.25));
+        assertEquals(400, faster.length);
+        assertEquals(1000, faster[faster.length / 2], 100);
+        assertEquals(1000, TimeStretch.renderOnce(toBytes(samples), 0.5).length / 2);
+    }
+
+    private static byte[] toBytes(short[] samples) {
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            data[i * 2] = (byte) samples[i];
+            data[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        return data;
+    }
+
+    private static short[] toSamples(byte[] data) {
+        short[] samples = new short[data.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((data[i * 2 + 1] << 8) | (data[i * 2] & 0xFF));
+        }
+        return samples;
+    }
+}